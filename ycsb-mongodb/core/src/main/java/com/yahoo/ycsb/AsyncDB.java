@@ -0,0 +1,214 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A DB that can have several operations in flight from a single client thread. Each asynchronous method issues the
+ * operation and returns at once; the returned stage completes with the same code the blocking method would have
+ * returned. The result and values maps passed in belong to the operation until its stage completes.
+ *
+ * The blocking methods wait for the corresponding asynchronous ones, so a binding only has to implement the
+ * asynchronous methods. A stage that completes exceptionally counts as the error code -1.
+ *
+ * When the workload's "asyncops" property is set, DBWrapper lets each client thread have up to "maxinflight"
+ * operations outstanding at once, and measures each operation from when it is issued until its stage completes.
+ */
+public abstract class AsyncDB extends DB
+{
+    /**
+     * The maximum number of asynchronous operations a client thread can have outstanding at once. Issuing one more
+     * waits for one of them to complete.
+     */
+    public static final String MAX_IN_FLIGHT_PROPERTY="maxinflight";
+    public static final String MAX_IN_FLIGHT_PROPERTY_DEFAULT="16";
+
+    /**
+     * Wait for an operation to complete.
+     *
+     * @return The code the operation completed with, or -1 if it failed with an exception.
+     */
+    protected static int await(CompletionStage<Integer> stage)
+    {
+        try
+        {
+            return stage.toCompletableFuture().join();
+        }
+        catch (CompletionException e)
+        {
+            System.err.println(e.getCause());
+            return -1;
+        }
+    }
+
+    /**
+     * Issue a read of a record from the database. Each field/value pair from the result will be stored in a HashMap.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to read.
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A HashMap of field/value pairs for the result, filled in before the returned stage completes
+     * @return A stage completing with zero on success, a non-zero error code on error or "not found".
+     */
+    public abstract CompletionStage<Integer> readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result);
+
+    /**
+     * Issue a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     *
+     * @param table The name of the table
+     * @param startkey The record key of the first record to read.
+     * @param recordcount The number of records to read
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record, filled in before the returned stage completes
+     * @return A stage completing with zero on success, a non-zero error code on error.
+     */
+    public abstract CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result);
+
+    /**
+     * Issue an update of a record in the database.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to write.
+     * @param values A HashMap of field/value pairs to update in the record
+     * @return A stage completing with zero on success, a non-zero error code on error.
+     */
+    public abstract CompletionStage<Integer> updateAsync(String table, String key, HashMap<String,ByteIterator> values);
+
+    /**
+     * Issue an insert of a record in the database.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to insert.
+     * @param values A HashMap of field/value pairs to insert in the record
+     * @return A stage completing with zero on success, a non-zero error code on error.
+     */
+    public abstract CompletionStage<Integer> insertAsync(String table, String key, HashMap<String,ByteIterator> values);
+
+    /**
+     * Issue a delete of a record from the database.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to delete.
+     * @return A stage completing with zero on success, a non-zero error code on error.
+     */
+    public abstract CompletionStage<Integer> deleteAsync(String table, String key);
+
+    /**
+     * Issue a read with the given consistency. Bindings that can choose the consistency of each operation override
+     * this; by default the consistency is ignored.
+     *
+     * @param consistency The consistency to read with, or null for the binding's configured default.
+     */
+    public CompletionStage<Integer> readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        return readAsync(table,key,fields,result);
+    }
+
+    /**
+     * Issue a range scan with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to read with, or null for the binding's configured default.
+     */
+    public CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        return scanAsync(table,startkey,recordcount,fields,result);
+    }
+
+    /**
+     * Issue an update with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to write with, or null for the binding's configured default.
+     */
+    public CompletionStage<Integer> updateAsync(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return updateAsync(table,key,values);
+    }
+
+    /**
+     * Issue an insert with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to write with, or null for the binding's configured default.
+     */
+    public CompletionStage<Integer> insertAsync(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return insertAsync(table,key,values);
+    }
+
+    /**
+     * Issue a delete with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to write with, or null for the binding's configured default.
+     */
+    public CompletionStage<Integer> deleteAsync(String table, String key, WriteConsistency consistency)
+    {
+        return deleteAsync(table,key);
+    }
+
+    public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+    {
+        return await(readAsync(table,key,fields,result));
+    }
+
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+    {
+        return await(scanAsync(table,startkey,recordcount,fields,result));
+    }
+
+    public int update(String table, String key, HashMap<String,ByteIterator> values)
+    {
+        return await(updateAsync(table,key,values));
+    }
+
+    public int insert(String table, String key, HashMap<String,ByteIterator> values)
+    {
+        return await(insertAsync(table,key,values));
+    }
+
+    public int delete(String table, String key)
+    {
+        return await(deleteAsync(table,key));
+    }
+
+    public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        return await(readAsync(table,key,fields,result,consistency));
+    }
+
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        return await(scanAsync(table,startkey,recordcount,fields,result,consistency));
+    }
+
+    public int update(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return await(updateAsync(table,key,values,consistency));
+    }
+
+    public int insert(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return await(insertAsync(table,key,values,consistency));
+    }
+
+    public int delete(String table, String key, WriteConsistency consistency)
+    {
+        return await(deleteAsync(table,key,consistency));
+    }
+}
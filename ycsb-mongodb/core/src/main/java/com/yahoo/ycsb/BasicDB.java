@@ -234,6 +234,40 @@ public class BasicDB extends DB
         return 0;
     }
 
+    /**
+     * The operations on keys in reusable buffers only make a String of the key when there is something to print.
+     */
+    public int read(String table, CharSequence key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        return verbose ? read(table,key.toString(),fields,result) : quiet();
+    }
+
+    public int scan(String table, CharSequence startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        return verbose ? scan(table,startkey.toString(),recordcount,fields,result) : quiet();
+    }
+
+    public int update(String table, CharSequence key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return verbose ? update(table,key.toString(),values) : quiet();
+    }
+
+    public int insert(String table, CharSequence key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return verbose ? insert(table,key.toString(),values) : quiet();
+    }
+
+    public int delete(String table, CharSequence key, WriteConsistency consistency)
+    {
+        return verbose ? delete(table,key.toString()) : quiet();
+    }
+
+    int quiet()
+    {
+        delay();
+        return 0;
+    }
+
     /**
      * Short test of BasicDB
      */
@@ -21,8 +21,12 @@ package com.yahoo.ycsb;
 import java.io.*;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
 
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MeasurementsDump;
+import com.yahoo.ycsb.measurements.MetricsServer;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 
@@ -37,17 +41,26 @@ import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 class StatusThread extends Thread
 {
     Vector<Thread> _threads;
+    Vector<ClientThread> _clients;
     String _label;
 
     /**
-     * The interval for reporting status.
+     * The interval for reporting status, in milliseconds.
      */
-    public static final long sleeptime=10000;
+    long _sleeptime;
 
-    public StatusThread(Vector<Thread> threads, String label)
+    /**
+     * @param threads the threads running the clients, used to tell when they are all done
+     * @param clients the clients, used to count the operations done so far
+     * @param label the label to prefix the status with
+     * @param sleeptime the interval for reporting status, in milliseconds
+     */
+    public StatusThread(Vector<Thread> threads, Vector<ClientThread> clients, String label, long sleeptime)
     {
         _threads=threads;
+        _clients=clients;
         _label=label;
+        _sleeptime=sleeptime;
     }
 
     /**
@@ -78,8 +91,10 @@ class StatusThread extends Thread
                 {
                     alldone=false;
                 }
+            }
 
-                ClientThread ct=(ClientThread)t;
+            for (ClientThread ct : _clients)
+            {
                 totalops+=ct.getOpsDone();
             }
 
@@ -105,7 +120,7 @@ class StatusThread extends Thread
 
             try
             {
-                sleep(sleeptime);
+                sleep(_sleeptime);
             }
             catch (InterruptedException e)
             {
@@ -118,12 +133,13 @@ class StatusThread extends Thread
 }
 
 /**
- * A thread for executing transactions or data inserts to the database.
+ * The body of a thread for executing transactions or data inserts to the database. It is run either on a platform
+ * thread or on a virtual thread, depending on the clientexecutor property.
  *
  * @author cooperb
  *
  */
-class ClientThread extends Thread
+class ClientThread implements Runnable
 {
     DB _db;
     boolean _dotransactions;
@@ -136,6 +152,17 @@ class ClientThread extends Thread
     int _threadcount;
     Object _workloadstate;
     Properties _props;
+    Measurements _measurements;
+
+    /**
+     * This thread's generator when the run is seeded, or null to let Utils seed one.
+     */
+    SplittableRandom _random;
+
+    /**
+     * The number of nanoseconds between the intended start times of two consecutive operations, if there is a target.
+     */
+    double _targetOpsTickNs;
 
 
     /**
@@ -162,6 +189,11 @@ class ClientThread extends Thread
         _threadid=threadid;
         _threadcount=threadcount;
         _props=props;
+        _measurements=Measurements.getMeasurements();
+        if (_target>0)
+        {
+            _targetOpsTickNs=1000000.0/_target;
+        }
         //System.out.println("Interval = "+interval);
     }
 
@@ -170,8 +202,44 @@ class ClientThread extends Thread
         return _opsdone;
     }
 
+    /**
+     * Tell the measurements when the next operation should start, so its latency can also be measured from that
+     * moment. Without a target there is no schedule, and operations are timed from when they are issued.
+     */
+    private void setIntendedStartTime(long st)
+    {
+        if (_target>0)
+        {
+            _measurements.setIntendedStartTimeNs(st+(long)(_opsdone*_targetOpsTickNs));
+        }
+    }
+
+    /**
+     * Throttle the operations by waiting until the intended start time of the next one.
+     */
+    private void throttleNanos(long st)
+    {
+        if (_target>0)
+        {
+            //this is more accurate than other throttling approaches we have tried,
+            //like sleeping for (1/target throughput)-operation latency,
+            //because it smooths timing inaccuracies over many operations
+            long deadline=st+(long)(_opsdone*_targetOpsTickNs);
+            long now;
+            while ((now=System.nanoTime())<deadline)
+            {
+                LockSupport.parkNanos(deadline-now);
+            }
+        }
+    }
+
     public void run()
     {
+        if (_random!=null)
+        {
+            Utils.setRandom(_random);
+        }
+
         try
         {
             _db.init();
@@ -201,7 +269,7 @@ class ClientThread extends Thread
             //and the sleep() doesn't make sense for granularities < 1 ms anyway
             if ( (_target>0) && (_target<=1.0) )
             {
-                sleep(Utils.random().nextInt((int)(1.0/_target)));
+                Thread.sleep(Utils.random().nextInt((int)(1.0/_target)));
             }
         }
         catch (InterruptedException e)
@@ -213,10 +281,11 @@ class ClientThread extends Thread
         {
             if (_dotransactions)
             {
-                long st=System.currentTimeMillis();
+                long st=System.nanoTime();
 
                 while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
                 {
+                    setIntendedStartTime(st);
 
                     if (!_workload.doTransaction(_db,_workloadstate))
                     {
@@ -225,34 +294,16 @@ class ClientThread extends Thread
 
                     _opsdone++;
 
-                    //throttle the operations
-                    if (_target>0)
-                    {
-                        //this is more accurate than other throttling approaches we have tried,
-                        //like sleeping for (1/target throughput)-operation latency,
-                        //because it smooths timing inaccuracies (from sleep() taking an int,
-                        //current time in millis) over many operations
-                        while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-                        {
-                            try
-                            {
-                                sleep(1);
-                            }
-                            catch (InterruptedException e)
-                            {
-                              // do nothing.
-                            }
-
-                        }
-                    }
+                    throttleNanos(st);
                 }
             }
             else
             {
-                long st=System.currentTimeMillis();
+                long st=System.nanoTime();
 
                 while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
                 {
+                    setIntendedStartTime(st);
 
                     if (!_workload.doInsert(_db,_workloadstate))
                     {
@@ -261,25 +312,7 @@ class ClientThread extends Thread
 
                     _opsdone++;
 
-                    //throttle the operations
-                    if (_target>0)
-                    {
-                        //this is more accurate than other throttling approaches we have tried,
-                        //like sleeping for (1/target throughput)-operation latency,
-                        //because it smooths timing inaccuracies (from sleep() taking an int,
-                        //current time in millis) over many operations
-                        while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-                        {
-                            try
-                            {
-                                sleep(1);
-                            }
-                            catch (InterruptedException e)
-                            {
-                              // do nothing.
-                            }
-                        }
-                    }
+                    throttleNanos(st);
                 }
             }
         }
@@ -327,6 +360,70 @@ public class Client
      */
     public static final String MAX_EXECUTION_TIME = "maxexecutiontime";
 
+    /**
+     * What to run each client on: "platform" for one operating system thread per client (default), or "virtual"
+     * for one virtual thread per client, which lets a single JVM run tens of thousands of clients. Virtual threads
+     * need a Java 21 or newer runtime.
+     */
+    public static final String CLIENT_EXECUTOR_PROPERTY="clientexecutor";
+    public static final String CLIENT_EXECUTOR_PROPERTY_DEFAULT="platform";
+
+    /**
+     * The seed for the random choices of the workload. Each client thread gets its own generator, split off one
+     * seeded with this in thread order, so two runs with the same seed and thread count make the same choices
+     * on each thread. Choices that depend on the other threads, such as the keys of inserts and of the "latest"
+     * distribution, still depend on how the threads interleave. Unset, every run is different.
+     */
+    public static final String RANDOM_SEED_PROPERTY="randomseed";
+
+    /**
+     * The interval, in seconds, at which the status is reported with -s.
+     */
+    public static final String STATUS_INTERVAL_PROPERTY="status.interval";
+    public static final String STATUS_INTERVAL_PROPERTY_DEFAULT="10";
+
+    /**
+     * Create the factory for the threads that run the clients.
+     *
+     * @param executor the value of the clientexecutor property
+     */
+    static ThreadFactory createClientThreadFactory(String executor)
+    {
+        if (executor.compareTo("platform")==0)
+        {
+            return new ThreadFactory()
+            {
+                int _count=0;
+
+                public Thread newThread(Runnable r)
+                {
+                    return new Thread(r,"ClientThread-"+(_count++));
+                }
+            };
+        }
+        else if (executor.compareTo("virtual")==0)
+        {
+            //built against Java 17, so go through reflection for Thread.ofVirtual().name(prefix,0).factory()
+            try
+            {
+                Class<?> builderclass=Class.forName("java.lang.Thread$Builder");
+                Object builder=Thread.class.getMethod("ofVirtual").invoke(null);
+                builder=builderclass.getMethod("name",String.class,long.class).invoke(builder,"ClientThread-",0L);
+                return (ThreadFactory)builderclass.getMethod("factory").invoke(builder);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                System.err.println("ERROR: "+CLIENT_EXECUTOR_PROPERTY+"=virtual needs a Java 21 or newer runtime, this is "+
+                        System.getProperty("java.version"));
+                System.exit(1);
+            }
+        }
+
+        System.err.println("ERROR: Invalid "+CLIENT_EXECUTOR_PROPERTY+": '"+executor+"'. Must be [ platform | virtual ]");
+        System.exit(1);
+        return null;
+    }
+
     public static void usageMessage()
     {
         System.out.println("Usage: java com.yahoo.ycsb.Client [options]");
@@ -344,15 +441,35 @@ public class Client
         System.out.println("  -p name=value:  specify a property to be passed to the DB and workloads;");
         System.out.println("                  multiple properties can be specified, and override any");
         System.out.println("                  values in the propertyfile");
-        System.out.println("  -s:  show status during run (default: no status)");
+        System.out.println("  -s:  show status during run (default: no status), every \""+STATUS_INTERVAL_PROPERTY+"\" seconds (default: 10)");
         System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
         System.out.println("");
+        System.out.println("To simulate more clients than the machine has threads for, set \""+CLIENT_EXECUTOR_PROPERTY+"=virtual\"");
+        System.out.println("to run each client on a virtual thread (needs Java 21 or newer).");
+        System.out.println("");
+        System.out.println("To serve live metrics in the Prometheus text format at http://host:port/metrics, set");
+        System.out.println("\""+MetricsServer.PORT_PROPERTY+"\" to the port.");
+        System.out.println("");
+        System.out.println("To make the same choices of operations and keys in every run, set \""+RANDOM_SEED_PROPERTY+"\" to a number.");
+        System.out.println("");
+        System.out.println("To leave the warm-up out of the measurements, set \""+MeasurementWindow.WARMUP_TIME_PROPERTY+"\" (seconds) and/or \""+MeasurementWindow.WARMUP_OPS_PROPERTY+"\".");
+        System.out.println("To leave out the end of the run, set \""+MeasurementWindow.COOLDOWN_TIME_PROPERTY+"\" (seconds before \""+MAX_EXECUTION_TIME+"\" is up)");
+        System.out.println("and/or \""+MeasurementWindow.COOLDOWN_OPS_PROPERTY+"\" (operations before the operation count is reached).");
+        System.out.println("");
         System.out.println("Required properties:");
         System.out.println("  "+WORKLOAD_PROPERTY+": the name of the workload class to use (e.g. com.yahoo.ycsb.workloads.CoreWorkload)");
         System.out.println("");
         System.out.println("To run the transaction phase from multiple servers, start a separate client on each.");
         System.out.println("To run the load phase from multiple servers, start a separate client on each; additionally,");
         System.out.println("use the \"insertcount\" and \"insertstart\" properties to divide up the records to be inserted");
+        System.out.println("");
+        System.out.println("To run either phase from several processes on this machine and merge their measurements, set");
+        System.out.println("\""+Coordinator.WORKERS_PROPERTY+"\" to the number of processes. Each runs \"threadcount\" threads.");
+    }
+
+    static double throughput(long opcount, long runtime)
+    {
+        return (runtime > 0) ? 1000.0 * ((double) opcount) / ((double) runtime) : 0;
     }
 
     public static boolean checkRequiredProperties(Properties props)
@@ -369,12 +486,24 @@ public class Client
 
     /**
      * Exports the measurements to either sysout or a file using the exporter
-     * loaded from conf.
+     * loaded from conf, after dumping them to the measurement.dumpfile if one is given.
+     * @param start The start of the run in milliseconds since the epoch, kept in the dump.
+     * @param window The phases of the run if it warmed up or cooled down, whose run times and throughputs are
+     *        exported apart from the steady state's; null if the whole run was measured.
      * @throws IOException Either failed to write to output stream or failed to close it.
      */
-    private static void exportMeasurements(Properties props, int opcount, long runtime)
-            throws IOException
+    static void exportMeasurements(Properties props, Measurements measurements, long opcount, long start, long runtime,
+            MeasurementWindow window) throws IOException
     {
+        String dumpFile = props.getProperty(Measurements.MEASUREMENT_DUMP_FILE);
+        if (dumpFile != null)
+        {
+            try (DataOutputStream dump = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dumpFile))))
+            {
+                MeasurementsDump.write(dump, measurements, start, runtime, opcount);
+            }
+        }
+
         MeasurementsExporter exporter = null;
         try
         {
@@ -403,10 +532,22 @@ public class Client
             }
 
             exporter.write("OVERALL", "RunTime(ms)", runtime);
-            double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
-            exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
+            exporter.write("OVERALL", "Throughput(ops/sec)", throughput(opcount, runtime));
+
+            if (window != null)
+            {
+                for (Measurements.Phase phase : new Measurements.Phase[] {Measurements.Phase.WARMUP, Measurements.Phase.COOLDOWN})
+                {
+                    if (window.reached(phase))
+                    {
+                        exporter.write(phase.name(), "RunTime(ms)", window.getRunTime(phase));
+                        exporter.write(phase.name(), "Operations", window.getOperations(phase));
+                        exporter.write(phase.name(), "Throughput(ops/sec)", throughput(window.getOperations(phase), window.getRunTime(phase)));
+                    }
+                }
+            }
 
-            Measurements.getMeasurements().exportMeasurements(exporter);
+            measurements.exportMeasurements(exporter);
         } finally
         {
             if (exporter != null)
@@ -591,6 +732,21 @@ public class Client
             System.exit(0);
         }
 
+        //a worker gets its share of the work from the coordinator before anything is set up
+        Coordinator.Worker worker=null;
+        if (props.getProperty(Coordinator.ADDRESS_PROPERTY)!=null)
+        {
+            try
+            {
+                worker=Coordinator.join(props);
+            }
+            catch (IOException e)
+            {
+                System.err.println("ERROR: Could not join the coordinator at "+props.getProperty(Coordinator.ADDRESS_PROPERTY)+": "+e);
+                System.exit(1);
+            }
+        }
+
         long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
 
         //get number of threads, target and db
@@ -598,6 +754,25 @@ public class Client
         dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
         target=Integer.parseInt(props.getProperty("target","0"));
 
+        //the workload is set up on this thread, so it gets the first generator
+        SplittableRandom seeds=null;
+        if (props.getProperty(RANDOM_SEED_PROPERTY)!=null)
+        {
+            seeds=new SplittableRandom(Long.parseLong(props.getProperty(RANDOM_SEED_PROPERTY)));
+            Utils.setRandom(seeds.split());
+        }
+
+        String clientexecutor=props.getProperty(CLIENT_EXECUTOR_PROPERTY,CLIENT_EXECUTOR_PROPERTY_DEFAULT);
+        ThreadFactory threadfactory=createClientThreadFactory(clientexecutor);
+        if ( (clientexecutor.compareTo("virtual")==0) &&
+                Boolean.parseBoolean(props.getProperty(Measurements.MEASUREMENT_THREADLOCAL,Measurements.MEASUREMENT_THREADLOCAL_DEFAULT)) )
+        {
+            //a per-thread histogram for each of thousands of virtual threads would take more memory than the clients
+            System.err.println("WARNING: "+Measurements.MEASUREMENT_THREADLOCAL+" keeps one histogram per client, "+
+                    "ignoring it with "+CLIENT_EXECUTOR_PROPERTY+"=virtual");
+            props.setProperty(Measurements.MEASUREMENT_THREADLOCAL,"false");
+        }
+
         //compute the target throughput
         double targetperthreadperms=-1;
         if (target>0)
@@ -613,6 +788,12 @@ public class Client
             System.out.print(" "+args[i]);
         }
         System.out.println();
+
+        if ( (worker==null) && (props.getProperty(Coordinator.WORKERS_PROPERTY)!=null) )
+        {
+            System.exit(Coordinator.coordinate(props,args,dotransactions));
+        }
+
         System.err.println("Loading workload...");
 
         //show a warning message that creating the workload is taking a while
@@ -693,6 +874,7 @@ public class Client
         }
 
         Vector<Thread> threads=new Vector<Thread>();
+        Vector<ClientThread> clients=new Vector<ClientThread>();
 
         for (int threadid=0; threadid<threadcount; threadid++)
         {
@@ -707,22 +889,67 @@ public class Client
                 System.exit(0);
             }
 
-            Thread t=new ClientThread(db,dotransactions,workload,threadid,threadcount,props,opcount/threadcount,targetperthreadperms);
+            ClientThread ct=new ClientThread(db,dotransactions,workload,threadid,threadcount,props,opcount/threadcount,targetperthreadperms);
+            if (seeds!=null)
+            {
+                ct._random=seeds.split();
+            }
 
-            threads.add(t);
+            clients.add(ct);
+            threads.add(threadfactory.newThread(ct));
             //t.start();
         }
 
+        if (worker!=null)
+        {
+            try
+            {
+                worker.awaitStart();
+            }
+            catch (IOException e)
+            {
+                System.err.println("ERROR: Lost the coordinator: "+e);
+                System.exit(1);
+            }
+        }
+
         StatusThread statusthread=null;
 
         if (status)
         {
-            statusthread=new StatusThread(threads,label);
+            long sleeptime=(long)(1000*Double.parseDouble(props.getProperty(STATUS_INTERVAL_PROPERTY,STATUS_INTERVAL_PROPERTY_DEFAULT)));
+            statusthread=new StatusThread(threads,clients,label,sleeptime);
             statusthread.start();
         }
 
+        MetricsServer metrics=null;
+        try
+        {
+            metrics=MetricsServer.start(props,Measurements.getMeasurements(),() ->
+            {
+                long ops=0;
+                for (ClientThread ct : clients)
+                {
+                    ops+=ct.getOpsDone();
+                }
+                return ops;
+            });
+        }
+        catch (IOException e)
+        {
+            System.err.println("ERROR: Could not serve metrics on port "+props.getProperty(MetricsServer.PORT_PROPERTY)+": "+e);
+            System.exit(1);
+        }
+
+        MeasurementWindow window=MeasurementWindow.create(props,opcount,maxExecutionTime,threads,clients,Measurements.getMeasurements());
+
         long st=System.currentTimeMillis();
 
+        if (window!=null)
+        {
+            window.begin(st);
+        }
+
         for (Thread t : threads)
         {
             t.start();
@@ -742,15 +969,30 @@ public class Client
             try
             {
                 t.join();
-                opsDone += ((ClientThread)t).getOpsDone();
             }
             catch (InterruptedException e)
             {
             }
         }
 
+        for (ClientThread ct : clients)
+        {
+            opsDone += ct.getOpsDone();
+        }
+
         long en=System.currentTimeMillis();
 
+        //only the steady state counts towards the overall run time and throughput
+        long start=st;
+        long runtime=en-st;
+        if (window!=null)
+        {
+            window.finish(en, opsDone);
+            start=window.getStart(Measurements.Phase.STEADY);
+            runtime=window.getRunTime(Measurements.Phase.STEADY);
+            opsDone=(int)window.getOperations(Measurements.Phase.STEADY);
+        }
+
         if (terminator != null && !terminator.isInterrupted()) {
             terminator.interrupt();
         }
@@ -773,7 +1015,14 @@ public class Client
 
         try
         {
-            exportMeasurements(props, opsDone, en - st);
+            if (worker!=null)
+            {
+                worker.finish(Measurements.getMeasurements(), opsDone, start, runtime);
+            }
+            else
+            {
+                exportMeasurements(props, Measurements.getMeasurements(), opsDone, start, runtime, window);
+            }
         } catch (IOException e)
         {
             System.err.println("Could not export measurements, error: " + e.getMessage());
@@ -781,6 +1030,11 @@ public class Client
             System.exit(-1);
         }
 
+        if (metrics!=null)
+        {
+            metrics.stop();
+        }
+
         System.exit(0);
     }
 }
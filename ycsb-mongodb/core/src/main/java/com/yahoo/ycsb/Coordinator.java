@@ -0,0 +1,434 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MeasurementsDump;
+
+/**
+ * Runs a benchmark from several client processes at once, for when one client JVM can't drive the database hard
+ * enough, and merges what they measured as if a single client had run it.
+ *
+ * A client started with "coordinator.workers=N" doesn't run the workload itself. It launches N workers on this
+ * machine with the same command line, or with "coordinator.launch=false" waits for N workers started by hand with
+ * "coordinator.address=host:port" to connect. Each worker is given a disjoint share of the work: its own
+ * insertstart and insertcount in the load phase, its share of operationcount in the transaction phase, its share
+ * of the target throughput, and its own random seed if one is set. The workers set up their workload, wait until
+ * all of them are ready, and start together. When they are done they send their histograms to the coordinator,
+ * which adds them up and exports them, so the percentiles are those of all the operations of all the workers.
+ * The throughput is the total number of operations over the time from the start of the first worker to the end
+ * of the last one.
+ *
+ * Each worker runs "threadcount" threads.
+ */
+public class Coordinator
+{
+    /**
+     * The number of worker processes to run the benchmark from.
+     */
+    public static final String WORKERS_PROPERTY="coordinator.workers";
+
+    /**
+     * The host and port of the coordinator, which makes a client a worker. Set by the coordinator for the workers
+     * it launches.
+     */
+    public static final String ADDRESS_PROPERTY="coordinator.address";
+
+    /**
+     * The port the coordinator listens on for its workers. The default of 0 picks any free port.
+     */
+    public static final String PORT_PROPERTY="coordinator.port";
+    public static final String PORT_PROPERTY_DEFAULT="0";
+
+    /**
+     * If true, the coordinator launches its workers on this machine. If false, it waits for the workers to be
+     * started by hand, possibly on other machines.
+     */
+    public static final String LAUNCH_PROPERTY="coordinator.launch";
+    public static final String LAUNCH_PROPERTY_DEFAULT="true";
+
+    /**
+     * Options for the JVMs of the launched workers, separated by spaces, e.g. "-Xmx4g".
+     */
+    public static final String JVM_ARGS_PROPERTY="coordinator.jvmargs";
+    public static final String JVM_ARGS_PROPERTY_DEFAULT="";
+
+    static final int PROTOCOL_VERSION=1;
+
+    //the messages after the assignment: ready, start and the results
+    static final int READY=1;
+    static final int START=2;
+    static final int RESULTS=3;
+
+    /**
+     * A worker's connection to its coordinator.
+     */
+    static final class Worker
+    {
+        final Socket _socket;
+        final DataInputStream _in;
+        final DataOutputStream _out;
+
+        Worker(Socket socket, Properties props) throws IOException
+        {
+            _socket=socket;
+            _in=new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            _out=new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            int version=_in.readInt();
+            if (version!=PROTOCOL_VERSION)
+            {
+                throw new IOException("Coordinator speaks protocol version "+version+", expected "+PROTOCOL_VERSION);
+            }
+            int count=_in.readInt();
+            for (int i=0; i<count; i++)
+            {
+                String name=_in.readUTF();
+                props.setProperty(name,_in.readUTF());
+            }
+        }
+
+        /**
+         * Tell the coordinator this worker is ready, and wait for all the workers to be.
+         */
+        void awaitStart() throws IOException
+        {
+            _out.writeInt(READY);
+            _out.flush();
+            int message=_in.readInt();
+            if (message!=START)
+            {
+                throw new IOException("Expected the start of the run from the coordinator, got "+message);
+            }
+        }
+
+        /**
+         * Send the results of this worker to the coordinator.
+         */
+        void finish(Measurements measurements, int opsdone, long start, long runtime) throws IOException
+        {
+            _out.writeInt(RESULTS);
+            MeasurementsDump.write(_out,measurements,start,runtime,opsdone);
+            _out.flush();
+            _socket.close();
+        }
+    }
+
+    /**
+     * Connect to the coordinator given by the coordinator.address property, and apply the share of the work it
+     * assigns to the properties.
+     */
+    static Worker join(Properties props) throws IOException
+    {
+        String address=props.getProperty(ADDRESS_PROPERTY);
+        int colon=address.lastIndexOf(':');
+        if (colon<0)
+        {
+            throw new IOException("Invalid "+ADDRESS_PROPERTY+" '"+address+"', expected host:port");
+        }
+        Socket socket=new Socket(address.substring(0,colon),Integer.parseInt(address.substring(colon+1)));
+        try
+        {
+            return new Worker(socket,props);
+        }
+        catch (IOException e)
+        {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the first item of the share of worker of a total split as evenly as possible among workers.
+     */
+    static long offset(long total, int worker, int workers)
+    {
+        return total*worker/workers;
+    }
+
+    /**
+     * @return the size of the share of worker of a total split as evenly as possible among workers.
+     */
+    static long share(long total, int worker, int workers)
+    {
+        return offset(total,worker+1,workers)-offset(total,worker,workers);
+    }
+
+    /**
+     * @return the number of operations of the run that are split among the workers: the operation count in the
+     *         transaction phase, the number of records to insert in the load phase, 0 if there is no limit.
+     */
+    static long count(Properties props, boolean dotransactions)
+    {
+        if (dotransactions)
+        {
+            return Long.parseLong(props.getProperty(Client.OPERATION_COUNT_PROPERTY,"0"));
+        }
+        return Long.parseLong(props.getProperty(Client.INSERT_COUNT_PROPERTY,props.getProperty(Client.RECORD_COUNT_PROPERTY,"0")));
+    }
+
+    /**
+     * Compute the properties that give a worker its share of the work.
+     */
+    static Properties assignment(Properties props, boolean dotransactions, int worker, int workers)
+    {
+        Properties ret=new Properties();
+        long count=count(props,dotransactions);
+        if (dotransactions)
+        {
+            ret.setProperty(Client.OPERATION_COUNT_PROPERTY,Long.toString(share(count,worker,workers)));
+        }
+        else
+        {
+            //the same records a single client would insert
+            long start=Long.parseLong(props.getProperty(Workload.INSERT_START_PROPERTY,Workload.INSERT_START_PROPERTY_DEFAULT));
+            ret.setProperty(Workload.INSERT_START_PROPERTY,Long.toString(start+offset(count,worker,workers)));
+            ret.setProperty(Client.INSERT_COUNT_PROPERTY,Long.toString(share(count,worker,workers)));
+        }
+
+        long target=Long.parseLong(props.getProperty("target","0"));
+        if (target>0)
+        {
+            //a target of 0 means no target at all
+            ret.setProperty("target",Long.toString(Math.max(share(target,worker,workers),1)));
+        }
+
+        String seed=props.getProperty(Client.RANDOM_SEED_PROPERTY);
+        if (seed!=null)
+        {
+            ret.setProperty(Client.RANDOM_SEED_PROPERTY,Long.toString(Long.parseLong(seed)+worker));
+        }
+        return ret;
+    }
+
+    static Process launch(String[] args, String jvmargs, int port) throws IOException
+    {
+        List<String> command=new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"),"bin"),"java").getPath());
+        for (String arg : jvmargs.trim().split("\\s+"))
+        {
+            if (arg.length()>0)
+            {
+                command.add(arg);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Client.class.getName());
+        Collections.addAll(command,args);
+        command.add("-p");
+        command.add(ADDRESS_PROPERTY+"="+InetAddress.getLoopbackAddress().getHostAddress()+":"+port);
+        //the worker's own output goes to stderr, so that stdout only has the merged results
+        final Process p=new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        Thread output=new Thread("Worker output")
+        {
+            public void run()
+            {
+                try
+                {
+                    p.getInputStream().transferTo(System.err);
+                }
+                catch (IOException e)
+                {
+                }
+            }
+        };
+        output.setDaemon(true);
+        output.start();
+        return p;
+    }
+
+    /**
+     * Wait for the next worker to connect. If the workers were launched, fail as soon as one of them exits.
+     */
+    static Socket accept(ServerSocket server, List<Process> processes) throws IOException
+    {
+        while (true)
+        {
+            try
+            {
+                return server.accept();
+            }
+            catch (SocketTimeoutException e)
+            {
+                for (Process p : processes)
+                {
+                    if (!p.isAlive())
+                    {
+                        throw new IOException("A worker exited with status "+p.exitValue()+" before connecting");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the benchmark from the workers, and export their merged measurements.
+     *
+     * @param args the command line of the coordinator, which the launched workers are started with
+     * @return the exit status of the coordinator
+     */
+    static int coordinate(Properties props, String[] args, boolean dotransactions)
+    {
+        int workers=Integer.parseInt(props.getProperty(WORKERS_PROPERTY));
+        if (workers<1)
+        {
+            System.err.println("ERROR: Invalid "+WORKERS_PROPERTY+" "+workers+", expected at least 1");
+            return 1;
+        }
+        //a count of 0 means no limit, so a worker given a share of 0 would never stop
+        long count=count(props,dotransactions);
+        if ( (count>0) && (count<workers) )
+        {
+            System.err.println("ERROR: Can't split "+count+" operations among "+workers+" workers, use at most "+count+" workers");
+            return 1;
+        }
+        boolean launch=Boolean.parseBoolean(props.getProperty(LAUNCH_PROPERTY,LAUNCH_PROPERTY_DEFAULT));
+        int port=Integer.parseInt(props.getProperty(PORT_PROPERTY,PORT_PROPERTY_DEFAULT));
+
+        List<Process> processes=new ArrayList<Process>();
+        List<Socket> sockets=new ArrayList<Socket>();
+        try (ServerSocket server=new ServerSocket(port,workers,launch ? InetAddress.getLoopbackAddress() : null))
+        {
+            if (launch)
+            {
+                server.setSoTimeout(1000);
+                for (int i=0; i<workers; i++)
+                {
+                    processes.add(launch(args,props.getProperty(JVM_ARGS_PROPERTY,JVM_ARGS_PROPERTY_DEFAULT),server.getLocalPort()));
+                }
+            }
+            else
+            {
+                System.err.println("Waiting for "+workers+" workers to connect to port "+server.getLocalPort()+
+                        " (start them with -p "+ADDRESS_PROPERTY+"=<host>:"+server.getLocalPort()+")");
+            }
+
+            MeasurementsDump results=run(server,processes,sockets,props,dotransactions,workers);
+            Client.exportMeasurements(props,results.getMeasurements(),results.getOperations(),results.getStart(),results.getRunTime(),null);
+
+            int status=0;
+            for (Process p : processes)
+            {
+                status=Math.max(status,p.waitFor());
+            }
+            return status;
+        }
+        catch (IOException e)
+        {
+            System.err.println("ERROR: Could not run the workers: "+e);
+            return 1;
+        }
+        catch (InterruptedException e)
+        {
+            return 1;
+        }
+        finally
+        {
+            for (Socket socket : sockets)
+            {
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException e)
+                {
+                }
+            }
+            for (Process p : processes)
+            {
+                p.destroy();
+            }
+        }
+    }
+
+    /**
+     * Give each worker that connects to the server its share of the work, start them together once all of them
+     * are ready, and merge their results.
+     *
+     * @param processes The launched workers, if any, which must not exit before connecting.
+     * @param sockets Collects the connections to the workers, for the caller to close.
+     */
+    static MeasurementsDump run(ServerSocket server, List<Process> processes, List<Socket> sockets, Properties props,
+            boolean dotransactions, int workers) throws IOException
+    {
+        List<DataInputStream> ins=new ArrayList<DataInputStream>();
+        List<DataOutputStream> outs=new ArrayList<DataOutputStream>();
+        for (int i=0; i<workers; i++)
+        {
+            Socket socket=accept(server,processes);
+            sockets.add(socket);
+            DataOutputStream out=new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ins.add(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            outs.add(out);
+
+            Properties assignment=assignment(props,dotransactions,i,workers);
+            out.writeInt(PROTOCOL_VERSION);
+            out.writeInt(assignment.size());
+            for (String name : assignment.stringPropertyNames())
+            {
+                out.writeUTF(name);
+                out.writeUTF(assignment.getProperty(name));
+            }
+            out.flush();
+        }
+
+        //the barrier: start the run once every worker has set up its workload
+        for (DataInputStream in : ins)
+        {
+            expect(in,READY);
+        }
+        System.err.println("Starting test on "+workers+" workers.");
+        for (DataOutputStream out : outs)
+        {
+            out.writeInt(START);
+            out.flush();
+        }
+
+        MeasurementsDump results=new MeasurementsDump(props);
+        for (DataInputStream in : ins)
+        {
+            expect(in,RESULTS);
+            results.merge(in);
+        }
+        return results;
+    }
+
+    static void expect(DataInputStream in, int message) throws IOException
+    {
+        int got=in.readInt();
+        if (got!=message)
+        {
+            throw new IOException("Expected message "+message+" from a worker, got "+got);
+        }
+    }
+}
@@ -134,4 +134,113 @@ public abstract class DB
      * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
      */
     public abstract int delete(String table, String key);
+
+    /**
+     * Read a record from the database with the given consistency. Bindings that can choose the consistency of each
+     * operation override this; by default the consistency is ignored.
+     *
+     * @param consistency The consistency to read with, or null for the binding's configured default.
+     * @see #read(String, String, Set, HashMap)
+     */
+    public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        return read(table,key,fields,result);
+    }
+
+    /**
+     * Perform a range scan with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to read with, or null for the binding's configured default.
+     * @see #scan(String, String, int, Set, Vector)
+     */
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        return scan(table,startkey,recordcount,fields,result);
+    }
+
+    /**
+     * Update a record with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to write with, or null for the binding's configured default.
+     * @see #update(String, String, HashMap)
+     */
+    public int update(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return update(table,key,values);
+    }
+
+    /**
+     * Insert a record with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to write with, or null for the binding's configured default.
+     * @see #insert(String, String, HashMap)
+     */
+    public int insert(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return insert(table,key,values);
+    }
+
+    /**
+     * Delete a record with the given consistency. By default the consistency is ignored.
+     *
+     * @param consistency The consistency to write with, or null for the binding's configured default.
+     * @see #delete(String, String)
+     */
+    public int delete(String table, String key, WriteConsistency consistency)
+    {
+        return delete(table,key);
+    }
+
+    /**
+     * Read a record whose key is in a reusable buffer such as a KeyBuffer. The key may only be looked at until
+     * this returns. Bindings that can send the key without making a String of it override this; by default the
+     * key is copied into one.
+     *
+     * @see #read(String, String, Set, HashMap, ReadConsistency)
+     */
+    public int read(String table, CharSequence key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        return read(table,key.toString(),fields,result,consistency);
+    }
+
+    /**
+     * Perform a range scan from a key in a reusable buffer. By default the key is copied into a String.
+     *
+     * @see #scan(String, String, int, Set, Vector, ReadConsistency)
+     */
+    public int scan(String table, CharSequence startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        return scan(table,startkey.toString(),recordcount,fields,result,consistency);
+    }
+
+    /**
+     * Update a record whose key is in a reusable buffer. By default the key is copied into a String.
+     *
+     * @see #update(String, String, HashMap, WriteConsistency)
+     */
+    public int update(String table, CharSequence key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return update(table,key.toString(),values,consistency);
+    }
+
+    /**
+     * Insert a record whose key is in a reusable buffer. A binding that keeps the record after returning, e.g. to
+     * batch it, has to copy the key. By default the key is copied into a String.
+     *
+     * @see #insert(String, String, HashMap, WriteConsistency)
+     */
+    public int insert(String table, CharSequence key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return insert(table,key.toString(),values,consistency);
+    }
+
+    /**
+     * Delete a record whose key is in a reusable buffer. By default the key is copied into a String.
+     *
+     * @see #delete(String, String, WriteConsistency)
+     */
+    public int delete(String table, CharSequence key, WriteConsistency consistency)
+    {
+        return delete(table,key.toString(),consistency);
+    }
 }
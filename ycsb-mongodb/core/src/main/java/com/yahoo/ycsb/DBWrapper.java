@@ -17,29 +17,55 @@
 
 package com.yahoo.ycsb;
 
-import com.mongodb.ReadConcern;
-import com.mongodb.ReadPreference;
-import com.mongodb.WriteConcern;
 import com.yahoo.ycsb.measurements.Measurements;
 
 import java.util.HashMap;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
 
 /**
  * Wrapper around a "real" DB that measures latencies and counts return codes.
+ *
+ * If the real DB is an AsyncDB, the asynchronous operations are passed through and measured when they complete, and
+ * at most "maxinflight" of them are outstanding at once. Otherwise the asynchronous operations run the blocking ones
+ * and return a completed stage.
  */
-public class DBWrapper extends DB
+public class DBWrapper extends AsyncDB
 {
     DB _db;
+    AsyncDB _asyncdb;
     Measurements _measurements;
-    String readConcern;
-    String readPreference;
-    String writeConcern;
-    String operationType;
     Properties props;
 
+    /**
+     * The consistency of the operations that don't ask for one, from the read preference and read concern or the
+     * write concern the binding was configured with.
+     */
+    ReadConsistency _defaultread;
+    WriteConsistency _defaultwrite;
+
+    /**
+     * The measurements of each operation for each consistency, indexed by the consistency's ordinal and named
+     * after it, e.g. "READ PRIMARY" or "UPDATE MAJORITY". They are resolved once here rather than on every
+     * operation.
+     */
+    Measurements.Handle[] _read;
+    Measurements.Handle[] _scan;
+    Measurements.Handle[] _update;
+    Measurements.Handle[] _insert;
+    Measurements.Handle[] _delete;
+    Measurements.Handle _cleanup;
+
+    /**
+     * Bounds the asynchronous operations outstanding from this client thread.
+     */
+    int _maxinflight;
+    Semaphore _window;
+
 
     public DBWrapper(DB db)
     {
@@ -47,6 +73,22 @@ public class DBWrapper extends DB
         props = _db.getProperties();
         _measurements=Measurements.getMeasurements();
         _measurements.init();
+
+        _defaultread=defaultReadConsistency();
+        _defaultwrite=defaultWriteConsistency();
+        _read=readHandles("READ");
+        _scan=readHandles("SCAN");
+        _update=writeHandles("UPDATE");
+        _insert=writeHandles("INSERT");
+        _delete=writeHandles("DELETE");
+        _cleanup=_measurements.getHandle("CLEANUP");
+
+        if (db instanceof AsyncDB)
+        {
+            _asyncdb=(AsyncDB)db;
+            _maxinflight=Integer.parseInt(props.getProperty(MAX_IN_FLIGHT_PROPERTY,MAX_IN_FLIGHT_PROPERTY_DEFAULT));
+            _window=new Semaphore(_maxinflight);
+        }
     }
 
     /**
@@ -80,10 +122,97 @@ public class DBWrapper extends DB
      */
     public void cleanup() throws DBException
     {
+        if (_asyncdb!=null)
+        {
+            //wait for the operations still in flight, so they are measured before the results are exported
+            _window.acquireUninterruptibly(_maxinflight);
+            _window.release(_maxinflight);
+        }
+
         long st=System.nanoTime();
         _db.cleanup();
         long en=System.nanoTime();
-        _measurements.measure("CLEANUP", (int)((en-st)/1000));
+        _cleanup.measure((int)((en-st)/1000));
+    }
+
+    /**
+     * The consistency of reads and scans that don't ask for one, from the read preference and read concern.
+     */
+    ReadConsistency defaultReadConsistency()
+    {
+        String readPreference = props.getProperty("mongodb.readPreference", "primary").toLowerCase();
+        String readConcern = props.getProperty("mongodb.readConcern", "local").toLowerCase();
+
+        if ("primary".equals(readPreference)) {
+            if ("majority".equals(readConcern)) {
+                return ReadConsistency.MAJORITY;
+            }
+            return ReadConsistency.PRIMARY;
+        } else if ("secondary".equals(readPreference)) {
+            return ReadConsistency.SECONDARY;
+        }
+        System.err.println("ERROR: Invalid readPreference/readConcern: '" + readPreference + "'. Must be [ primary | secondary ] '" + readConcern + "'. Must be [ local | majority ]");
+        System.exit(1);
+        return null;
+    }
+
+    /**
+     * The consistency of updates, inserts and deletes that don't ask for one, from the write concern.
+     */
+    WriteConsistency defaultWriteConsistency()
+    {
+        String writeConcern = props.getProperty("mongodb.writeConcern", "acknowledged");
+        WriteConsistency consistency = WriteConsistency.fromName(writeConcern);
+        if (consistency == null) {
+            System.err.println("ERROR: Invalid writeConcern: '"
+                    + writeConcern
+                    + "'. Must be [ unacknowledged | acknowledged | majority | all ]");
+            System.exit(1);
+        }
+        return consistency;
+    }
+
+    Measurements.Handle[] readHandles(String op)
+    {
+        ReadConsistency[] consistencies=ReadConsistency.values();
+        Measurements.Handle[] handles=new Measurements.Handle[consistencies.length];
+        for (int i=0; i<consistencies.length; i++)
+        {
+            handles[i]=_measurements.getHandle(op+" "+consistencies[i].name());
+        }
+        return handles;
+    }
+
+    Measurements.Handle[] writeHandles(String op)
+    {
+        WriteConsistency[] consistencies=WriteConsistency.values();
+        Measurements.Handle[] handles=new Measurements.Handle[consistencies.length];
+        for (int i=0; i<consistencies.length; i++)
+        {
+            handles[i]=_measurements.getHandle(op+" "+consistencies[i].name());
+        }
+        return handles;
+    }
+
+    Measurements.Handle handle(Measurements.Handle[] handles, ReadConsistency consistency)
+    {
+        return handles[((consistency!=null) ? consistency : _defaultread).ordinal()];
+    }
+
+    Measurements.Handle handle(Measurements.Handle[] handles, WriteConsistency consistency)
+    {
+        return handles[((consistency!=null) ? consistency : _defaultwrite).ordinal()];
+    }
+
+    /**
+     * Measure an operation that took from st (or from its intended start time ist) until en, and count its return
+     * code.
+     */
+    static void measure(Measurements.Handle handle, long ist, long st, long en, int res)
+    {
+        handle.measure((int) ((en - st) / 1000));
+        handle.measureIntended((int) ((en - ist) / 1000));
+        handle.reportReturnCode(res);
     }
 
     /**
@@ -97,28 +226,30 @@ public class DBWrapper extends DB
      */
     public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
     {
-        long st=System.nanoTime();
-        int res=_db.read(table,key,fields,result);
-        long en=System.nanoTime();
-        readPreference = props.getProperty("mongodb.readPreference", "primary").toLowerCase();
-        readConcern = props.getProperty("mongodb.readConcern", "local").toLowerCase();
-
-        if ("primary".equals(readPreference)) {
-            operationType = "READ PRIMARY";
-            if ("majority".equals(readConcern)) {
-                operationType = "READ MAJORITY";
-            }
-        } else if ("secondary".equals(readPreference)) {
-            operationType = "READ SECONDARY";
-        } else {
-            System.err.println("ERROR: Invalid readPreference/readConcern: '" + readPreference + "'. Must be [ primary | secondary ] '" + readConcern + "'. Must be [ local | majority ]");
-            System.exit(1);
-        }
+        return read(table,key,fields,result,null);
+    }
 
-        // Measure and report based on operation type
-        _measurements.measure(operationType, (int) ((en - st) / 1000));
-        _measurements.reportReturnCode(operationType, res);
+    public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        return read(table,(CharSequence)key,fields,result,consistency);
+    }
 
+    public int read(String table, CharSequence key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=System.nanoTime();
+        int res;
+        _measurements.startOperation();
+        try
+        {
+            res=_db.read(table,key,fields,result,consistency);
+        }
+        finally
+        {
+            _measurements.endOperation();
+        }
+        long en=System.nanoTime();
+        measure(handle(_read,consistency), ist, st, en, res);
         return res;
     }
 
@@ -134,29 +265,30 @@ public class DBWrapper extends DB
      */
     public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
     {
-        long st=System.nanoTime();
-        int res=_db.scan(table,startkey,recordcount,fields,result);
-        long en=System.nanoTime();
+        return scan(table,startkey,recordcount,fields,result,null);
+    }
 
-        readPreference = props.getProperty("mongodb.readPreference", "primary").toLowerCase();
-        readConcern = props.getProperty("mongodb.readConcern", "local").toLowerCase();
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        return scan(table,(CharSequence)startkey,recordcount,fields,result,consistency);
+    }
 
-        if ("primary".equals(readPreference)) {
-            operationType = "SCAN PRIMARY";
-            if ("majority".equals(readConcern)) {
-                operationType = "SCAN MAJORITY";
-            }
-        } else if ("secondary".equals(readPreference)) {
-            operationType = "SCAN SECONDARY";
-        } else {
-            System.err.println("ERROR: Invalid readPreference/readConcern: '" + readPreference + "'. Must be [ primary | secondary ] '" + readConcern + "'. Must be [ local | majority ]");
-            System.exit(1);
+    public int scan(String table, CharSequence startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=System.nanoTime();
+        int res;
+        _measurements.startOperation();
+        try
+        {
+            res=_db.scan(table,startkey,recordcount,fields,result,consistency);
         }
-
-        // Measure and report based on operation type
-        _measurements.measure(operationType, (int) ((en - st) / 1000));
-        _measurements.reportReturnCode(operationType, res);
-
+        finally
+        {
+            _measurements.endOperation();
+        }
+        long en=System.nanoTime();
+        measure(handle(_scan,consistency), ist, st, en, res);
         return res;
     }
 
@@ -171,38 +303,30 @@ public class DBWrapper extends DB
      */
     public int update(String table, String key, HashMap<String,ByteIterator> values)
     {
-        long st=System.nanoTime();
-        int res=_db.update(table,key,values);
-        long en=System.nanoTime();
-        long duration = (en-st) / 1000;
+        return update(table,key,values,null);
+    }
 
-        writeConcern = props.getProperty("mongodb.writeConcern");
-        if (writeConcern == null) {
-            writeConcern = "acknowledged";
-        }
+    public int update(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return update(table,(CharSequence)key,values,consistency);
+    }
 
-        String updateLabel = "UPDATE ONE";
-        switch (writeConcern) {
-            case "unacknowledged":
-                updateLabel = "UPDATE NONE";
-                break;
-            case "acknowledged":
-                updateLabel = "UPDATE ONE";
-                break;
-            case "majority":
-                updateLabel = "UPDATE MAJORITY";
-                break;
-            case "all":
-                updateLabel = "UPDATE ALL";
-                break;
-            default:
-                System.err.println("ERROR: Invalid writeConcern: '"
-                        + writeConcern
-                        + "'. Must be [ unacknowledged | acknowledged | majority | all ]");
-                System.exit(1);
+    public int update(String table, CharSequence key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=System.nanoTime();
+        int res;
+        _measurements.startOperation();
+        try
+        {
+            res=_db.update(table,key,values,consistency);
+        }
+        finally
+        {
+            _measurements.endOperation();
         }
-        _measurements.measure(updateLabel, (int) duration);
-        _measurements.reportReturnCode(updateLabel, res);
+        long en=System.nanoTime();
+        measure(handle(_update,consistency), ist, st, en, res);
         return res;
     }
 
@@ -217,43 +341,30 @@ public class DBWrapper extends DB
      */
     public int insert(String table, String key, HashMap<String,ByteIterator> values)
     {
-        long st=System.nanoTime();
-        int res=_db.insert(table,key,values);
-        long en=System.nanoTime();
-        long duration = (en-st) / 1000;
+        return insert(table,key,values,null);
+    }
 
-        if (props == null) {
-            System.err.println("Properties (props) is not initialized.");
-            return res; // Or consider throwing an exception or initializing props here
-        }
-        writeConcern = props.getProperty("mongodb.writeConcern");
-        // Ensure writeConcern is not null
-        if (writeConcern == null) {
-            System.err.println("writeConcern property is not set.");
-            return res; // Handle the error as appropriate
+    public int insert(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        return insert(table,(CharSequence)key,values,consistency);
+    }
+
+    public int insert(String table, CharSequence key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=System.nanoTime();
+        int res;
+        _measurements.startOperation();
+        try
+        {
+            res=_db.insert(table,key,values,consistency);
         }
-        String insertLabel = "INSERT ONE";
-        switch (writeConcern) {
-            case "unacknowledged":
-                insertLabel = "INSERT NONE";
-                break;
-            case "acknowledged":
-                insertLabel = "INSERT ONE";
-                break;
-            case "majority":
-                insertLabel = "INSERT MAJORITY";
-                break;
-            case "all":
-                insertLabel = "INSERT ALL";
-                break;
-            default:
-                System.err.println("ERROR: Invalid writeConcern: '"
-                        + writeConcern
-                        + "'. Must be [ unacknowledged | acknowledged | majority | all ]");
-                System.exit(1);
+        finally
+        {
+            _measurements.endOperation();
         }
-        _measurements.measure(insertLabel, (int) duration);
-        _measurements.reportReturnCode(insertLabel, res);
+        long en=System.nanoTime();
+        measure(handle(_insert,consistency), ist, st, en, res);
         return res;
     }
 
@@ -266,34 +377,201 @@ public class DBWrapper extends DB
      */
     public int delete(String table, String key)
     {
+        return delete(table,key,null);
+    }
+
+    public int delete(String table, String key, WriteConsistency consistency)
+    {
+        return delete(table,(CharSequence)key,consistency);
+    }
+
+    public int delete(String table, CharSequence key, WriteConsistency consistency)
+    {
+        long ist=_measurements.getIntendedStartTimeNs();
         long st=System.nanoTime();
-        int res=_db.delete(table,key);
-        long en=System.nanoTime();
-        long duration = (en-st) / 1000;
-
-        writeConcern = props.getProperty("mongodb.writeConcern");
-        String deleteLabel = "DELETE ONE";
-        switch (writeConcern) {
-            case "unacknowledged":
-                deleteLabel = "DELETE NONE";
-                break;
-            case "acknowledged":
-                deleteLabel = "DELETE ONE";
-                break;
-            case "majority":
-                deleteLabel = "DELETE MAJORITY";
-                break;
-            case "all":
-                deleteLabel = "DELETE ALL";
-                break;
-            default:
-                System.err.println("ERROR: Invalid writeConcern: '"
-                        + writeConcern
-                        + "'. Must be [ unacknowledged | acknowledged | majority | all ]");
-                System.exit(1);
+        int res;
+        _measurements.startOperation();
+        try
+        {
+            res=_db.delete(table,key,consistency);
+        }
+        finally
+        {
+            _measurements.endOperation();
         }
-        _measurements.measure(deleteLabel, (int) duration);
-        _measurements.reportReturnCode(deleteLabel, res);
+        long en=System.nanoTime();
+        measure(handle(_delete,consistency), ist, st, en, res);
         return res;
     }
+
+    /**
+     * Wait for room in the in-flight window and mark the start of an asynchronous operation.
+     *
+     * @return The time the operation is issued.
+     */
+    long beginAsync()
+    {
+        _window.acquireUninterruptibly();
+        _measurements.startOperation();
+        return System.nanoTime();
+    }
+
+    /**
+     * Mark the end of an asynchronous operation, and give its place in the in-flight window back.
+     */
+    void releaseAsync()
+    {
+        _measurements.endOperation();
+        _window.release();
+    }
+
+    /**
+     * Measure an asynchronous operation when it completes, and give its place in the in-flight window back.
+     */
+    CompletionStage<Integer> endAsync(final Measurements.Handle handle, final long ist, final long st, CompletionStage<Integer> stage)
+    {
+        return stage.handle((res, e) ->
+        {
+            try
+            {
+                int code=(e==null && res!=null) ? res : -1;
+                measure(handle, ist, st, System.nanoTime(), code);
+                return code;
+            }
+            finally
+            {
+                releaseAsync();
+            }
+        });
+    }
+
+    public CompletionStage<Integer> readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+    {
+        return readAsync(table,key,fields,result,null);
+    }
+
+    public CompletionStage<Integer> readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result, ReadConsistency consistency)
+    {
+        if (_asyncdb==null)
+        {
+            return CompletableFuture.completedFuture(read(table,key,fields,result,consistency));
+        }
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=beginAsync();
+        CompletionStage<Integer> stage;
+        try
+        {
+            stage=_asyncdb.readAsync(table,key,fields,result,consistency);
+        }
+        catch (RuntimeException e)
+        {
+            releaseAsync();
+            throw e;
+        }
+        return endAsync(handle(_read,consistency), ist, st, stage);
+    }
+
+    public CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+    {
+        return scanAsync(table,startkey,recordcount,fields,result,null);
+    }
+
+    public CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result, ReadConsistency consistency)
+    {
+        if (_asyncdb==null)
+        {
+            return CompletableFuture.completedFuture(scan(table,startkey,recordcount,fields,result,consistency));
+        }
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=beginAsync();
+        CompletionStage<Integer> stage;
+        try
+        {
+            stage=_asyncdb.scanAsync(table,startkey,recordcount,fields,result,consistency);
+        }
+        catch (RuntimeException e)
+        {
+            releaseAsync();
+            throw e;
+        }
+        return endAsync(handle(_scan,consistency), ist, st, stage);
+    }
+
+    public CompletionStage<Integer> updateAsync(String table, String key, HashMap<String,ByteIterator> values)
+    {
+        return updateAsync(table,key,values,null);
+    }
+
+    public CompletionStage<Integer> updateAsync(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        if (_asyncdb==null)
+        {
+            return CompletableFuture.completedFuture(update(table,key,values,consistency));
+        }
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=beginAsync();
+        CompletionStage<Integer> stage;
+        try
+        {
+            stage=_asyncdb.updateAsync(table,key,values,consistency);
+        }
+        catch (RuntimeException e)
+        {
+            releaseAsync();
+            throw e;
+        }
+        return endAsync(handle(_update,consistency), ist, st, stage);
+    }
+
+    public CompletionStage<Integer> insertAsync(String table, String key, HashMap<String,ByteIterator> values)
+    {
+        return insertAsync(table,key,values,null);
+    }
+
+    public CompletionStage<Integer> insertAsync(String table, String key, HashMap<String,ByteIterator> values, WriteConsistency consistency)
+    {
+        if (_asyncdb==null)
+        {
+            return CompletableFuture.completedFuture(insert(table,key,values,consistency));
+        }
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=beginAsync();
+        CompletionStage<Integer> stage;
+        try
+        {
+            stage=_asyncdb.insertAsync(table,key,values,consistency);
+        }
+        catch (RuntimeException e)
+        {
+            releaseAsync();
+            throw e;
+        }
+        return endAsync(handle(_insert,consistency), ist, st, stage);
+    }
+
+    public CompletionStage<Integer> deleteAsync(String table, String key)
+    {
+        return deleteAsync(table,key,null);
+    }
+
+    public CompletionStage<Integer> deleteAsync(String table, String key, WriteConsistency consistency)
+    {
+        if (_asyncdb==null)
+        {
+            return CompletableFuture.completedFuture(delete(table,key,consistency));
+        }
+        long ist=_measurements.getIntendedStartTimeNs();
+        long st=beginAsync();
+        CompletionStage<Integer> stage;
+        try
+        {
+            stage=_asyncdb.deleteAsync(table,key,consistency);
+        }
+        catch (RuntimeException e)
+        {
+            releaseAsync();
+            throw e;
+        }
+        return endAsync(handle(_delete,consistency), ist, st, stage);
+    }
 }
@@ -0,0 +1,115 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * A record key, a fixed prefix followed by a decimal number, kept in a reusable char array. Setting the number
+ * rewrites the digits in place, so a client thread can build the key of every operation without allocating.
+ *
+ * A KeyBuffer is mutable and belongs to one thread: whatever it is passed to may only look at it until the call
+ * returns, and has to copy it (e.g. with toString()) to keep it any longer.
+ */
+public class KeyBuffer implements CharSequence
+{
+    /**
+     * Enough for the prefix and the sign and 19 digits of any long.
+     */
+    char[] _chars;
+    int _prefixlength;
+    int _length;
+
+    public KeyBuffer(String prefix)
+    {
+        _prefixlength=prefix.length();
+        _chars=new char[_prefixlength+20];
+        prefix.getChars(0,_prefixlength,_chars,0);
+        _length=_prefixlength;
+    }
+
+    /**
+     * Replace the number after the prefix.
+     *
+     * @return this buffer
+     */
+    public KeyBuffer set(long number)
+    {
+        // Work with the number negated, as Long.toString does, so Long.MIN_VALUE needs no special case.
+        boolean negative=number<0;
+        long n=negative ? number : -number;
+
+        int digits=1;
+        for (long p=-10; (digits<19) && (n<=p); p*=10)
+        {
+            digits++;
+        }
+
+        int pos=_prefixlength;
+        if (negative)
+        {
+            _chars[pos++]='-';
+        }
+        _length=pos+digits;
+        for (int i=_length-1; i>=pos; i--)
+        {
+            long q=n/10;
+            _chars[i]=(char)('0'+(q*10-n));
+            n=q;
+        }
+        return this;
+    }
+
+    public int length()
+    {
+        return _length;
+    }
+
+    public char charAt(int index)
+    {
+        if ( (index<0) || (index>=_length) )
+        {
+            throw new IndexOutOfBoundsException("index "+index+", length "+_length);
+        }
+        return _chars[index];
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+        return toString().substring(start,end);
+    }
+
+    /**
+     * Copy the key into dst at offset as ASCII bytes.
+     *
+     * @return the number of bytes written
+     */
+    public int getBytes(byte[] dst, int offset)
+    {
+        for (int i=0; i<_length; i++)
+        {
+            dst[offset+i]=(byte)_chars[i];
+        }
+        return _length;
+    }
+
+    /**
+     * @return a copy of the key, for keeping it beyond the call it was passed to.
+     */
+    @Override
+    public String toString()
+    {
+        return new String(_chars,0,_length);
+    }
+}
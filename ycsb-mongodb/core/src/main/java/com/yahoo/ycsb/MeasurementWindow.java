@@ -0,0 +1,261 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.Measurements.Phase;
+
+/**
+ * Splits a run into warm-up, steady state and cool-down, so that connection setup, JIT compilation and the ragged
+ * tail where the client threads finish one by one are left out of the measurements. Operations done while warming
+ * up or cooling down are measured under their own names, see Measurements.Phase, and the run time and throughput
+ * exported as OVERALL are those of the steady state only.
+ *
+ * The warm-up lasts until every limit that is set, "warmuptime" seconds and "warmupops" operations, has been
+ * reached. The cool-down starts "cooldowntime" seconds before the maximum execution time is up, or "cooldownops"
+ * operations before the operation count is, and in any case as soon as the first client thread is done if either
+ * is set. The phases are switched by polling the operation counts of the client threads, so a boundary is only
+ * as exact as the poll interval.
+ */
+public class MeasurementWindow extends Thread
+{
+    /**
+     * The minimum time (in seconds) to warm up for before measuring the steady state.
+     */
+    public static final String WARMUP_TIME_PROPERTY="warmuptime";
+
+    /**
+     * The minimum number of operations to warm up with before measuring the steady state.
+     */
+    public static final String WARMUP_OPS_PROPERTY="warmupops";
+
+    /**
+     * The time (in seconds) before the maximum execution time is up to stop measuring the steady state.
+     */
+    public static final String COOLDOWN_TIME_PROPERTY="cooldowntime";
+
+    /**
+     * The number of operations before the operation count is reached to stop measuring the steady state.
+     */
+    public static final String COOLDOWN_OPS_PROPERTY="cooldownops";
+
+    static final long POLL_INTERVAL_MS=10;
+
+    final Vector<Thread> _threads;
+    final Vector<ClientThread> _clients;
+    final Measurements _measurements;
+
+    final long _warmupms;
+    final long _warmupops;
+    final boolean _cooldown;
+    final long _cooldownms;
+    final long _cooldownops;
+
+    long _st;
+
+    //the start and end of each phase, in milliseconds and operations done, by the ordinal of the phase
+    final long[] _starttime=new long[Phase.values().length];
+    final long[] _endtime=new long[Phase.values().length];
+    final long[] _startops=new long[Phase.values().length];
+    final long[] _endops=new long[Phase.values().length];
+
+    /**
+     * Create the window for a run, or return null if none of its properties is set and the whole run is measured.
+     *
+     * @param opcount The number of operations the run does, 0 if it isn't limited.
+     * @param maxexecutiontime The maximum execution time of the run in seconds, 0 if it isn't limited.
+     */
+    public static MeasurementWindow create(Properties props, long opcount, long maxexecutiontime,
+            Vector<Thread> threads, Vector<ClientThread> clients, Measurements measurements)
+    {
+        long warmupms=(long)(1000*Double.parseDouble(props.getProperty(WARMUP_TIME_PROPERTY,"0")));
+        long warmupops=Long.parseLong(props.getProperty(WARMUP_OPS_PROPERTY,"0"));
+        String cooldowntime=props.getProperty(COOLDOWN_TIME_PROPERTY);
+        String cooldownops=props.getProperty(COOLDOWN_OPS_PROPERTY);
+        if ( (warmupms<=0) && (warmupops<=0) && (cooldowntime==null) && (cooldownops==null) )
+        {
+            return null;
+        }
+
+        //the cool-down starts when the steady state has run for this long, or done this many operations
+        long cooldownms=Long.MAX_VALUE;
+        if ( (cooldowntime!=null) && (maxexecutiontime>0) )
+        {
+            cooldownms=1000*maxexecutiontime-(long)(1000*Double.parseDouble(cooldowntime));
+        }
+        long cooldownat=Long.MAX_VALUE;
+        if ( (cooldownops!=null) && (opcount>0) )
+        {
+            cooldownat=opcount-Long.parseLong(cooldownops);
+        }
+        return new MeasurementWindow(threads,clients,measurements,warmupms,warmupops,
+                (cooldowntime!=null) || (cooldownops!=null),cooldownms,cooldownat);
+    }
+
+    MeasurementWindow(Vector<Thread> threads, Vector<ClientThread> clients, Measurements measurements,
+            long warmupms, long warmupops, boolean cooldown, long cooldownms, long cooldownops)
+    {
+        _threads=threads;
+        _clients=clients;
+        _measurements=measurements;
+        _warmupms=warmupms;
+        _warmupops=warmupops;
+        _cooldown=cooldown;
+        _cooldownms=cooldownms;
+        _cooldownops=cooldownops;
+        setDaemon(true);
+    }
+
+    /**
+     * Start measuring the warm-up, before the client threads are started, and then start watching for the end of
+     * each phase.
+     */
+    public void begin(long st)
+    {
+        Phase first=( (_warmupms>0) || (_warmupops>0) ) ? Phase.WARMUP : Phase.STEADY;
+        _st=st;
+        _starttime[first.ordinal()]=st;
+        _measurements.setPhase(first);
+        start();
+    }
+
+    public void run()
+    {
+        while (true)
+        {
+            try
+            {
+                sleep(POLL_INTERVAL_MS);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            long now=System.currentTimeMillis();
+            long ops=opsDone();
+            Phase phase=_measurements.getPhase();
+            if (phase==Phase.WARMUP)
+            {
+                if ( (now-_st>=_warmupms) && (ops>=_warmupops) )
+                {
+                    switchPhase(Phase.STEADY,now,ops);
+                    if (!_cooldown)
+                    {
+                        return;
+                    }
+                }
+            }
+            else if (phase==Phase.STEADY)
+            {
+                if ( (now-_st>=_cooldownms) || (ops>=_cooldownops) || anyDone() )
+                {
+                    switchPhase(Phase.COOLDOWN,now,ops);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * End the last phase when the run is over.
+     */
+    public void finish(long en, long ops)
+    {
+        interrupt();
+        try
+        {
+            join();
+        }
+        catch (InterruptedException e)
+        {
+        }
+
+        Phase phase=_measurements.getPhase();
+        _endtime[phase.ordinal()]=en;
+        _endops[phase.ordinal()]=ops;
+        if (phase==Phase.WARMUP)
+        {
+            System.err.println("WARNING: The run ended while warming up, so nothing was measured in the steady state. Shorten the warm-up or run for longer.");
+            _starttime[Phase.STEADY.ordinal()]=en;
+            _endtime[Phase.STEADY.ordinal()]=en;
+            _startops[Phase.STEADY.ordinal()]=ops;
+            _endops[Phase.STEADY.ordinal()]=ops;
+        }
+    }
+
+    void switchPhase(Phase next, long now, long ops)
+    {
+        Phase phase=_measurements.getPhase();
+        _endtime[phase.ordinal()]=now;
+        _endops[phase.ordinal()]=ops;
+        _starttime[next.ordinal()]=now;
+        _startops[next.ordinal()]=ops;
+        _measurements.setPhase(next);
+    }
+
+    long opsDone()
+    {
+        long ops=0;
+        for (ClientThread ct : _clients)
+        {
+            ops+=ct.getOpsDone();
+        }
+        return ops;
+    }
+
+    boolean anyDone()
+    {
+        for (Thread t : _threads)
+        {
+            if (!t.isAlive())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the run got to the given phase.
+     */
+    public boolean reached(Phase phase)
+    {
+        return _endtime[phase.ordinal()]!=0;
+    }
+
+    /**
+     * The start of the phase in milliseconds since the epoch.
+     */
+    public long getStart(Phase phase)
+    {
+        return _starttime[phase.ordinal()];
+    }
+
+    public long getRunTime(Phase phase)
+    {
+        return _endtime[phase.ordinal()]-_starttime[phase.ordinal()];
+    }
+
+    public long getOperations(Phase phase)
+    {
+        return _endops[phase.ordinal()]-_startops[phase.ordinal()];
+    }
+}
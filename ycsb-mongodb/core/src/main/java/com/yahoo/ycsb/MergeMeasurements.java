@@ -0,0 +1,109 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MeasurementsDump;
+
+/**
+ * Merges the measurement dumps written by clients run with the measurement.dumpfile property, e.g. on several
+ * load generating machines, and exports the result as a single client would have: the overall run time and
+ * throughput, and the latencies of all the operations with their exact percentiles, and per interval for time
+ * series measurements.
+ */
+public class MergeMeasurements
+{
+    public static void usageMessage()
+    {
+        System.out.println("Usage: java com.yahoo.ycsb.MergeMeasurements [options] dumpfile...");
+        System.out.println("Options:");
+        System.out.println("  -P propertyfile: load properties from the given file");
+        System.out.println("  -p name=value:  specify a property, e.g. \"exporter\", \"exportfile\", \""+
+                Measurements.MEASUREMENT_DUMP_FILE+"\"");
+        System.out.println("                  or \"hdrhistogram.percentiles\"");
+    }
+
+    public static void main(String[] args)
+    {
+        Properties props=new Properties();
+        int argindex=0;
+        while ( (argindex<args.length) && args[argindex].startsWith("-") )
+        {
+            if ( (args[argindex].compareTo("-P")==0) && (argindex+1<args.length) )
+            {
+                try (InputStream in=new FileInputStream(args[argindex+1]))
+                {
+                    props.load(in);
+                }
+                catch (IOException e)
+                {
+                    System.err.println("ERROR: "+e.getMessage());
+                    System.exit(1);
+                }
+            }
+            else if ( (args[argindex].compareTo("-p")==0) && (argindex+1<args.length) && (args[argindex+1].indexOf('=')>0) )
+            {
+                String prop=args[argindex+1];
+                int eq=prop.indexOf('=');
+                props.setProperty(prop.substring(0,eq),prop.substring(eq+1));
+            }
+            else
+            {
+                usageMessage();
+                System.exit(0);
+            }
+            argindex+=2;
+        }
+
+        if (argindex==args.length)
+        {
+            usageMessage();
+            System.exit(0);
+        }
+
+        MeasurementsDump merged=new MeasurementsDump(props);
+        for (; argindex<args.length; argindex++)
+        {
+            try (DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(args[argindex]))))
+            {
+                merged.merge(in);
+            }
+            catch (IOException e)
+            {
+                System.err.println("ERROR: Could not merge "+args[argindex]+": "+e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        try
+        {
+            Client.exportMeasurements(props,merged.getMeasurements(),merged.getOperations(),merged.getStart(),merged.getRunTime(),null);
+        }
+        catch (IOException e)
+        {
+            System.err.println("ERROR: Could not export measurements: "+e.getMessage());
+            System.exit(1);
+        }
+    }
+}
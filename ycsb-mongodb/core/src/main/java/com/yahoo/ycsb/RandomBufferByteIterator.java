@@ -0,0 +1,76 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+/**
+ * A ByteIterator over random bytes in an array it keeps, refilled for every record instead of allocating a new
+ * iterator. The array is only replaced when the length changes, and toArray() hands it out without copying.
+ *
+ * A binding that is passed one may only use its bytes until the call returns: a binding that keeps them, e.g. to
+ * batch the record, has to copy them.
+ */
+public class RandomBufferByteIterator extends ByteIterator {
+  private byte[] buf = new byte[0];
+  private int off;
+
+  /**
+   * Refill the buffer with len random bytes, the same kind a RandomByteIterator generates, and rewind.
+   *
+   * @return this iterator
+   */
+  public RandomBufferByteIterator reset(int len) {
+    if (buf.length != len) {
+      buf = new byte[len];
+    }
+    RandomByteIterator.fillBytes(buf, 0, len);
+    off = 0;
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return off < buf.length;
+  }
+
+  @Override
+  public byte nextByte() {
+    return buf[off++];
+  }
+
+  @Override
+  public int nextBuf(byte[] buffer, int bufferOffset) {
+    int n = Math.min(buf.length - off, buffer.length - bufferOffset);
+    System.arraycopy(buf, off, buffer, bufferOffset, n);
+    off += n;
+    return bufferOffset + n;
+  }
+
+  @Override
+  public long bytesLeft() {
+    return buf.length - off;
+  }
+
+  /**
+   * Consumes the bytes and returns the buffer itself if none have been read yet, or a copy of what is left.
+   */
+  @Override
+  public byte[] toArray() {
+    if (off != 0) {
+      return super.toArray();
+    }
+    off = buf.length;
+    return buf;
+  }
+}
@@ -16,6 +16,11 @@
  */
 package com.yahoo.ycsb;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
 /**
  *  A ByteIterator that generates a random sequence of bytes.
  */
@@ -30,21 +35,35 @@ public class RandomByteIterator extends ByteIterator {
     return (off + bufOff) < len;
   }
 
-  private void fillBytesImpl(byte[] buffer, int base) {
-    int bytes = Utils.random().nextInt();
-    try {
-      buffer[base+0] = (byte)(((bytes) & 31) + ' ');
-      buffer[base+1] = (byte)(((bytes >> 5) & 31) + ' ');
-      buffer[base+2] = (byte)(((bytes >> 10) & 31) + ' ');
-      buffer[base+3] = (byte)(((bytes >> 15) & 31) + ' ');
-      buffer[base+4] = (byte)(((bytes >> 20) & 31) + ' ');
-      buffer[base+5] = (byte)(((bytes >> 25) & 31) + ' ');
-    } catch (ArrayIndexOutOfBoundsException e) { /* ignore it */ }
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * Eight printable bytes from 64 random bits: the low five bits of each byte offset by ' ', i.e. one of the 32
+   * characters from ' ' to '?'. No byte can carry into the next, so one mask and one add do all eight.
+   */
+  static long printable(long bits) {
+    return (bits & 0x1F1F1F1F1F1F1F1FL) + 0x2020202020202020L;
+  }
+
+  /**
+   * Fill buffer[from, to) with random printable bytes, a long at a time.
+   */
+  static void fillBytes(byte[] buffer, int from, int to) {
+    SplittableRandom random = Utils.fastRandom();
+    int i = from;
+    for (; i + 8 <= to; i += 8) {
+      LONGS.set(buffer, i, printable(random.nextLong()));
+    }
+    if (i < to) {
+      for (long bytes = printable(random.nextLong()); i < to; i++, bytes >>>= 8) {
+        buffer[i] = (byte)bytes;
+      }
+    }
   }
 
   private void fillBytes() {
     if(bufOff ==  buf.length) {
-      fillBytesImpl(buf, 0);
+      fillBytes(buf, 0, buf.length);
       bufOff = 0;
       off += buf.length;
     }
@@ -52,7 +71,7 @@ public class RandomByteIterator extends ByteIterator {
 
   public RandomByteIterator(long len) {
     this.len = len;
-    this.buf = new byte[6];
+    this.buf = new byte[8];
     this.bufOff = buf.length;
     fillBytes();
     this.off = 0;
@@ -72,10 +91,7 @@ public class RandomByteIterator extends ByteIterator {
     } else {
       ret = buffer.length - bufferOffset;
     }
-    int i;
-    for(i = 0; i < ret; i+=6) {
-      fillBytesImpl(buffer, i + bufferOffset);
-    }
+    fillBytes(buffer, bufferOffset, bufferOffset + ret);
     off+=ret;
     return ret + bufferOffset;
   }
@@ -0,0 +1,69 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * The consistency a single read or scan asks for. Bindings map it onto their own settings; a binding that has no
+ * such settings ignores it. Operations are measured per consistency, e.g. as "READ SECONDARY".
+ */
+public enum ReadConsistency
+{
+    /**
+     * Read from the primary, with the default read concern.
+     */
+    PRIMARY("primary"),
+
+    /**
+     * Read from a secondary.
+     */
+    SECONDARY("secondary"),
+
+    /**
+     * Read from the primary, seeing only data acknowledged by a majority of the replicas.
+     */
+    MAJORITY("majority");
+
+    private final String _name;
+
+    ReadConsistency(String name)
+    {
+        _name=name;
+    }
+
+    /**
+     * @return the name of this consistency in the workload properties, e.g. "secondary".
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @param name the name of a consistency in the workload properties
+     * @return the consistency, or null if there is none with that name
+     */
+    public static ReadConsistency fromName(String name)
+    {
+        for (ReadConsistency c : values())
+        {
+            if (c._name.compareTo(name)==0)
+            {
+                return c;
+            }
+        }
+        return null;
+    }
+}
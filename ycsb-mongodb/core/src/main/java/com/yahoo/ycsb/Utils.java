@@ -18,23 +18,56 @@
 package com.yahoo.ycsb;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Utility functions.
  */
 public class Utils
 {
+  /**
+   * Seeds the generators of threads that weren't given one with setRandom.
+   */
   private static final Random rand = new Random();
-  private static final ThreadLocal<Random> rng = new ThreadLocal<Random>();
+  private static final ThreadLocal<SplittableRandom> rng = new ThreadLocal<SplittableRandom>();
 
-  public static Random random() {
-    Random ret = rng.get();
+  /**
+   * This thread's generator for the workload's choices: operations, keys, fields and lengths. It is only used by
+   * its own thread, so unlike java.util.Random it has no atomic seed to update on every call.
+   */
+  public static SplittableRandom random() {
+    SplittableRandom ret = rng.get();
     if(ret == null) {
-      ret = new Random(rand.nextLong());
+      ret = new SplittableRandom(rand.nextLong());
       rng.set(ret);
     }
     return ret;
   }
+
+  private static final ThreadLocal<SplittableRandom> fastrng = new ThreadLocal<SplittableRandom>();
+
+  /**
+   * Give this thread its own generator, e.g. one split off a generator seeded with the "randomseed" property,
+   * so that runs with the same seed make the same choices. The generator for bulk data is split off it, so
+   * that how much data is generated (e.g. the field length) doesn't change the choices.
+   */
+  public static void setRandom(SplittableRandom random) {
+    rng.set(random);
+    fastrng.set(random.split());
+  }
+
+  /**
+   * This thread's generator for bulk random data, such as field values. It is kept apart from random() so that
+   * generating values doesn't shift the sequence of choices.
+   */
+  public static SplittableRandom fastRandom() {
+    SplittableRandom ret = fastrng.get();
+    if(ret == null) {
+      ret = new SplittableRandom(rand.nextLong());
+      fastrng.set(ret);
+    }
+    return ret;
+  }
       /**
        * Generate a random ASCII string of a given length.
        */
@@ -113,4 +146,22 @@ public class Utils
      }
      return Math.abs(hashval);
       }
+
+      /**
+       * Scramble a long with the 64 bit finalizer of MurmurHash3: two multiplies and three shifts, where FNVhash64
+       * takes a multiply per byte. Every output bit depends on every input bit, and different inputs give different
+       * outputs.
+       *
+       * @param val The value to scramble.
+       * @return The scrambled value, which may be negative.
+       */
+      public static long mix64(long val)
+      {
+     val ^= val >>> 33;
+     val *= 0xff51afd7ed558ccdL;
+     val ^= val >>> 33;
+     val *= 0xc4ceb9fe1a85ec53L;
+     val ^= val >>> 33;
+     return val;
+      }
 }
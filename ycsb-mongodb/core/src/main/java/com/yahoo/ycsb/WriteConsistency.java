@@ -0,0 +1,74 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * The acknowledgement a single update, insert or delete waits for. Bindings map it onto their own settings; a
+ * binding that has no such settings ignores it. Operations are measured per consistency, e.g. as "UPDATE MAJORITY".
+ */
+public enum WriteConsistency
+{
+    /**
+     * Don't wait for the write to be acknowledged.
+     */
+    NONE("unacknowledged"),
+
+    /**
+     * Wait for the primary to acknowledge the write.
+     */
+    ONE("acknowledged"),
+
+    /**
+     * Wait for a majority of the replicas to acknowledge the write.
+     */
+    MAJORITY("majority"),
+
+    /**
+     * Wait for all the replicas to acknowledge the write.
+     */
+    ALL("all");
+
+    private final String _name;
+
+    WriteConsistency(String name)
+    {
+        _name=name;
+    }
+
+    /**
+     * @return the name of this consistency in the workload properties, e.g. "majority".
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @param name the name of a consistency in the workload properties
+     * @return the consistency, or null if there is none with that name
+     */
+    public static WriteConsistency fromName(String name)
+    {
+        for (WriteConsistency c : values())
+        {
+            if (c._name.compareTo(name)==0)
+            {
+                return c;
+            }
+        }
+        return null;
+    }
+}
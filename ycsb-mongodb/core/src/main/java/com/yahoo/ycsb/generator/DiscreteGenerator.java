@@ -17,68 +17,157 @@
 
 package com.yahoo.ycsb.generator;
 
-import java.util.Vector;
-import java.util.Random;
+import java.util.ArrayList;
 
 import com.yahoo.ycsb.Utils;
 import com.yahoo.ycsb.WorkloadException;
 
 /**
- * Generates a distribution by choosing from a discrete set of values.
+ * Generates values with given relative weights. Draws use Vose's alias method: the weights are turned once into
+ * a table with a probability and an alias for each value, after which each draw takes one random number and
+ * one table lookup, however many values there are.
+ *
+ * Values are added before the first draw; adding one later rebuilds the table on the next draw.
  */
 public class DiscreteGenerator extends Generator
 {
-    class Pair
+    /**
+     * The alias table. A draw picks a column i uniformly, and returns value i with probability _prob[i], or value
+     * _alias[i] otherwise.
+     */
+    static final class Table
     {
-        public double _weight;
-        public String _value;
+        final double[] _prob;
+        final int[] _alias;
+
+        Table(double[] weights)
+        {
+            int n=weights.length;
+            _prob=new double[n];
+            _alias=new int[n];
+
+            double sum=0;
+            for (double w : weights)
+            {
+                sum+=w;
+            }
+            if (!(sum>0))
+            {
+                throw new IllegalStateException("DiscreteGenerator needs at least one value with a positive weight");
+            }
+
+            //scale the weights so they average 1, and split them into the columns that are short and those that
+            //are tall; each short column is topped up from a tall one, which becomes its alias
+            double[] scaled=new double[n];
+            int[] small=new int[n];
+            int[] large=new int[n];
+            int ns=0;
+            int nl=0;
+            for (int i=0; i<n; i++)
+            {
+                scaled[i]=weights[i]*n/sum;
+                if (scaled[i]<1.0)
+                {
+                    small[ns++]=i;
+                }
+                else
+                {
+                    large[nl++]=i;
+                }
+            }
 
-        Pair(double weight, String value)
+            while ( (ns>0) && (nl>0) )
+            {
+                int s=small[--ns];
+                int l=large[--nl];
+                _prob[s]=scaled[s];
+                _alias[s]=l;
+                scaled[l]=(scaled[l]+scaled[s])-1.0;
+                if (scaled[l]<1.0)
+                {
+                    small[ns++]=l;
+                }
+                else
+                {
+                    large[nl++]=l;
+                }
+            }
+
+            //whatever is left is full up to rounding
+            while (nl>0)
+            {
+                int l=large[--nl];
+                _prob[l]=1.0;
+                _alias[l]=l;
+            }
+            while (ns>0)
+            {
+                int s=small[--ns];
+                _prob[s]=1.0;
+                _alias[s]=s;
+            }
+        }
+
+        int next()
         {
-            _weight=weight;
-            _value=value;
+            double u=Utils.random().nextDouble()*_prob.length;
+            int i=(int)u;
+            return (u-i<_prob[i]) ? i : _alias[i];
         }
     }
 
-    Vector<Pair> _values;
+    ArrayList<String> _values;
+    ArrayList<Double> _weights;
+    volatile Table _table;
     String _lastvalue;
 
     public DiscreteGenerator()
     {
-        _values=new Vector<Pair>();
+        _values=new ArrayList<String>();
+        _weights=new ArrayList<Double>();
         _lastvalue=null;
     }
 
-    /**
-     * Generate the next string in the distribution.
-     */
-    public String nextString()
+    Table table()
     {
-        double sum=0;
-
-        for (Pair p : _values)
+        Table t=_table;
+        if (t==null)
         {
-            sum+=p._weight;
-        }
-
-        double val=Utils.random().nextDouble();
-
-        for (Pair p : _values)
-        {
-            if (val<p._weight/sum)
+            synchronized (this)
             {
-                return p._value;
+                t=_table;
+                if (t==null)
+                {
+                    double[] weights=new double[_weights.size()];
+                    for (int i=0; i<weights.length; i++)
+                    {
+                        weights[i]=_weights.get(i);
+                    }
+                    t=new Table(weights);
+                    _table=t;
+                }
             }
-
-            val-=p._weight/sum;
         }
+        return t;
+    }
 
-        //should never get here.
-        System.out.println("oops. should not get here.");
-
-        System.exit(0);
+    /**
+     * Generate the index of the next value in the distribution, in the order the values were added. Callers that
+     * map the values to something else, e.g. an enum, can look it up in an array rather than by string.
+     */
+    public int nextIndex()
+    {
+        return table().next();
+    }
 
-        return null;
+    /**
+     * Generate the next string in the distribution.
+     */
+    public String nextString()
+    {
+        String ret=_values.get(nextIndex());
+        _lastvalue=ret;
+        return ret;
     }
 
     /**
@@ -106,9 +195,26 @@ public class DiscreteGenerator extends Generator
         return _lastvalue;
     }
 
-    public void addValue(double weight, String value)
+    public synchronized void addValue(double weight, String value)
     {
-        _values.add(new Pair(weight,value));
+        _values.add(value);
+        _weights.add(weight);
+        _table=null;
     }
 
+    /**
+     * @return the number of values added.
+     */
+    public int size()
+    {
+        return _values.size();
+    }
+
+    /**
+     * @return the value with the given index, as returned by nextIndex().
+     */
+    public String getValue(int index)
+    {
+        return _values.get(index);
+    }
 }
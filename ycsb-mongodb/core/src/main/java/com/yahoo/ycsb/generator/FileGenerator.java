@@ -22,7 +22,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 
 /**
- * A generator, whose sequence is the lines of a file.
+ * A generator, whose sequence is the lines of a file. Threads sharing one take turns reading it; to replay a trace
+ * of operations at full speed, convert it for TraceWorkload instead.
  */
 public class FileGenerator extends Generator
 {
@@ -19,7 +19,6 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Random;
 
 import com.yahoo.ycsb.Utils;
 import com.yahoo.ycsb.generator.IntegerGenerator;
@@ -33,6 +32,10 @@ import com.yahoo.ycsb.generator.IntegerGenerator;
  *
  * The minimum value this distribution returns is block_size (not zero).
  *
+ * A draw picks a random number below the total count and binary searches the
+ * running totals of the bucket counts for it, so it takes O(log n) for n
+ * buckets. The counts may add up to more than fits in an int.
+ *
  * Modified Nov 19 2010 by sears
  *
  * @author snjones
@@ -42,6 +45,10 @@ public class HistogramGenerator extends IntegerGenerator {
 
     long block_size;
     long[] buckets;
+    /**
+     * cumulative[i] is the sum of the counts of buckets 0 to i.
+     */
+    long[] cumulative;
     long area;
     long weighted_area = 0;
     double mean_size = 0;
@@ -51,7 +58,7 @@ public class HistogramGenerator extends IntegerGenerator {
     String str;
     String[] line;
 
-    ArrayList<Integer> a = new ArrayList<Integer>();
+    ArrayList<Long> a = new ArrayList<Long>();
 
     str = in.readLine();
     if(str == null) {
@@ -67,7 +74,12 @@ public class HistogramGenerator extends IntegerGenerator {
         // [0] is the bucket, [1] is the value
         line = str.split("\t");
 
-        a.add(Integer.parseInt(line[0]), Integer.parseInt(line[1]));
+        // buckets that are left out are empty
+        int bucket = Integer.parseInt(line[0]);
+        while(a.size() <= bucket) {
+            a.add(0L);
+        }
+        a.set(bucket, Long.parseLong(line[1]));
     }
     buckets = new long[a.size()];
     for(int i = 0; i < a.size(); i++) {
@@ -84,9 +96,15 @@ public class HistogramGenerator extends IntegerGenerator {
         init();
     }
     private void init() {
+        cumulative = new long[buckets.length];
         for(int i = 0; i < buckets.length; i++) {
             area += buckets[i];
-            weighted_area = i * buckets[i];
+            // bucket i is drawn as (i+1)*block_size
+            weighted_area += (i+1) * buckets[i];
+            cumulative[i] = area;
+        }
+        if(area <= 0) {
+            throw new IllegalArgumentException("Histogram has no entries");
         }
         // calculate average file size
         mean_size = ((double)block_size) * ((double)weighted_area) / (double)(area);
@@ -94,17 +112,23 @@ public class HistogramGenerator extends IntegerGenerator {
 
     @Override
     public int nextInt() {
-        int number = Utils.random().nextInt((int)area);
-        int i;
+        long number = Utils.random().nextLong(area);
 
-        for(i = 0; i < (buckets.length - 1); i++){
-            number -= buckets[i];
-            if(number <= 0){
-                return (int)((i+1)*block_size);
+        // find the first bucket whose running total is past number
+        int lo = 0;
+        int hi = cumulative.length - 1;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(cumulative[mid] > number) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
             }
         }
 
-        return (int)(i * block_size);
+        int ret = (int)((lo+1)*block_size);
+        setLastInt(ret);
+        return ret;
     }
 
     @Override
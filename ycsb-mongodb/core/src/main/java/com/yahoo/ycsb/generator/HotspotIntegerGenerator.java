@@ -16,7 +16,7 @@
  */
 package com.yahoo.ycsb.generator;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import com.yahoo.ycsb.Utils;
 
@@ -77,7 +77,7 @@ public class HotspotIntegerGenerator extends IntegerGenerator {
   @Override
   public int nextInt() {
     int value = 0;
-    Random random = Utils.random();
+    SplittableRandom random = Utils.random();
     if (random.nextDouble() < hotOpnFraction) {
       // Choose a value from the hot set.
       value = lowerBound + random.nextInt(hotInterval);
@@ -64,17 +64,15 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
      * @param _items The number of items in the distribution.
      * @param _zipfianconstant The zipfian constant to use.
      */
-    /*
-// not supported, as the value of zeta depends on the zipfian constant, and we have only precomputed zeta for one zipfian constant
     public ScrambledZipfianGenerator(long _items, double _zipfianconstant)
     {
         this(0,_items-1,_zipfianconstant);
     }
-*/
 
     /**
-     * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant. If you
-     * use a zipfian constant other than 0.99, this will take a long time to complete because we need to recompute zeta.
+     * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant. For
+     * a zipfian constant other than 0.99, zeta over ITEM_COUNT items is estimated rather than summed, which takes
+     * constant time.
      * @param min The smallest integer to generate in the sequence.
      * @param max The largest integer to generate in the sequence.
      * @param _zipfianconstant The zipfian constant to use.
@@ -88,7 +86,7 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
         {
             gen=new ZipfianGenerator(0,ITEM_COUNT,_zipfianconstant,ZETAN);
         } else {
-            gen=new ZipfianGenerator(0,ITEM_COUNT,_zipfianconstant);
+            gen=new ZipfianGenerator(0,ITEM_COUNT,_zipfianconstant,ZetaCache.approximate(ITEM_COUNT+1,_zipfianconstant));
         }
     }
 
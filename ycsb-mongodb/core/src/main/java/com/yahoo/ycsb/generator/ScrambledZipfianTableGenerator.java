@@ -0,0 +1,85 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import com.yahoo.ycsb.Utils;
+
+/**
+ * The table-driven counterpart of ScrambledZipfianGenerator: draws from a ZipfianTableGenerator over
+ * ScrambledZipfianGenerator.ITEM_COUNT items and scatters the result across the item space with Utils.mix64
+ * instead of FNVhash64. The popularity of items follows the same distribution, but which items are popular
+ * differs from ScrambledZipfianGenerator.
+ */
+public class ScrambledZipfianTableGenerator extends IntegerGenerator
+{
+    ZipfianTableGenerator gen;
+    long _min,_itemcount;
+
+    /**
+     * Create a zipfian generator for the specified number of items using the specified zipfian constant.
+     *
+     * @param _items The number of items in the distribution.
+     * @param _zipfianconstant The zipfian constant to use.
+     */
+    public ScrambledZipfianTableGenerator(long _items, double _zipfianconstant)
+    {
+        this(0,_items-1,_zipfianconstant);
+    }
+
+    /**
+     * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant.
+     *
+     * @param min The smallest integer to generate in the sequence.
+     * @param max The largest integer to generate in the sequence.
+     * @param _zipfianconstant The zipfian constant to use.
+     */
+    public ScrambledZipfianTableGenerator(long min, long max, double _zipfianconstant)
+    {
+        _min=min;
+        _itemcount=max-min+1;
+        double zetan=(_zipfianconstant==ScrambledZipfianGenerator.USED_ZIPFIAN_CONSTANT)
+                ? ScrambledZipfianGenerator.ZETAN
+                : ZetaCache.approximate(ScrambledZipfianGenerator.ITEM_COUNT+1,_zipfianconstant);
+        gen=new ZipfianTableGenerator(0,ScrambledZipfianGenerator.ITEM_COUNT,_zipfianconstant,zetan);
+    }
+
+    /**
+     * Return the next int in the sequence.
+     */
+    @Override
+    public int nextInt() {
+        return (int)nextLong();
+    }
+
+    /**
+     * Return the next long in the sequence.
+     */
+    public long nextLong()
+    {
+        long ret=gen.nextLong();
+        ret=_min+(Utils.mix64(ret)>>>1)%_itemcount;
+        setLastInt((int)ret);
+        return ret;
+    }
+
+    /**
+     * The items are scattered evenly, so the mean is the middle of the range.
+     */
+    @Override
+    public double mean() {
+        return ((double)(_min+_min+_itemcount-1))/2.0;
+    }
+}
@@ -26,9 +26,18 @@ public class SkewedLatestGenerator extends IntegerGenerator
     ZipfianGenerator _zipfian;
 
     public SkewedLatestGenerator(CounterGenerator basis)
+    {
+        this(basis,ZipfianGenerator.ZIPFIAN_CONSTANT);
+    }
+
+    /**
+     * @param basis The generator whose last value is the most recent item.
+     * @param zipfianconstant The zipfian constant of the skew towards recent items.
+     */
+    public SkewedLatestGenerator(CounterGenerator basis, double zipfianconstant)
     {
         _basis=basis;
-        _zipfian=new ZipfianGenerator(_basis.lastInt());
+        _zipfian=new ZipfianGenerator(_basis.lastInt(),zipfianconstant);
         nextInt();
     }
 
@@ -0,0 +1,216 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.stream.LongStream;
+
+/**
+ * Computes the zeta constants of zipfian distributions, sum(1/i^theta) for i=1..n, and keeps them in a file so
+ * a client does not have to compute them again on the next run.
+ *
+ * Sums over many items are split across the common fork/join pool. The file is a properties file with one entry
+ * "theta:n=zeta" per constant. If it has no entry for n but one for a smaller count with the same theta, only the
+ * terms in between are added to that. Small sums are quicker to compute than to look up, and are not kept.
+ *
+ * Without a file, large sums are not added up at all but estimated in constant time by approximate().
+ */
+public class ZetaCache
+{
+    /**
+     * Sums over fewer items than this are computed serially, and are not kept in the file.
+     */
+    static final long PARALLEL_ITEMS=1L<<20;
+
+    /**
+     * approximate() adds up the terms for this many items exactly, and estimates the rest.
+     */
+    static final int EXACT_ITEMS=1000;
+
+    static File _file;
+    static Properties _zetas;
+
+    /**
+     * Keep the constants in the given file, or in none if it is null or empty. Clients sharing the file may each
+     * add to it; a client that loses a race only loses its entries.
+     */
+    public static synchronized void setFile(String path)
+    {
+        _file=( (path==null) || (path.length()==0) ) ? null : new File(path);
+        _zetas=null;
+    }
+
+    /**
+     * Compute zeta for n items and the zipfian constant theta, from the file if it is there, or estimate it if
+     * there is no file.
+     */
+    static double zeta(long n, double theta)
+    {
+        if (n<PARALLEL_ITEMS)
+        {
+            return sum(0,n,theta,0);
+        }
+
+        synchronized (ZetaCache.class)
+        {
+            if (_file==null)
+            {
+                return approximate(n,theta);
+            }
+
+            Properties zetas=load();
+            String exact=zetas.getProperty(key(n,theta));
+            if (exact!=null)
+            {
+                return Double.parseDouble(exact);
+            }
+
+            //start from the largest count below n that was computed for this theta
+            long st=0;
+            double initialsum=0;
+            String prefix=theta+":";
+            for (String name : zetas.stringPropertyNames())
+            {
+                if (name.startsWith(prefix))
+                {
+                    try
+                    {
+                        long count=Long.parseLong(name.substring(prefix.length()));
+                        if ( (count<n) && (count>st) )
+                        {
+                            initialsum=Double.parseDouble(zetas.getProperty(name));
+                            st=count;
+                        }
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        //not ours, skip it
+                    }
+                }
+            }
+
+            double zeta=sum(st,n,theta,initialsum);
+            zetas.setProperty(key(n,theta),Double.toString(zeta));
+            store(zetas);
+            return zeta;
+        }
+    }
+
+    /**
+     * Add the terms for items st+1 to n to initialsum, in parallel if there are many.
+     */
+    static double sum(long st, long n, double theta, double initialsum)
+    {
+        if (n-st<PARALLEL_ITEMS)
+        {
+            double sum=initialsum;
+            for (long i=st; i<n; i++)
+            {
+                sum+=1/(Math.pow(i+1,theta));
+            }
+            return sum;
+        }
+        return initialsum+LongStream.range(st,n).parallel().mapToDouble(i -> 1/(Math.pow(i+1,theta))).sum();
+    }
+
+    /**
+     * Estimate zeta for n items and the zipfian constant theta, in constant time. The first EXACT_ITEMS terms
+     * are added up, and the rest by the Euler-Maclaurin formula: the integral of x^-theta, plus the mean of the
+     * end terms, plus the corrections from the first, third and fifth derivatives. Past 1000 items the next
+     * correction is far below the precision of a double, so the estimate is closer than adding up billions of
+     * terms one by one.
+     */
+    public static double approximate(long n, double theta)
+    {
+        if (n<=EXACT_ITEMS)
+        {
+            return sum(0,n,theta,0);
+        }
+
+        double a=EXACT_ITEMS;
+        double b=n;
+        double sum=sum(0,EXACT_ITEMS-1,theta,0);
+
+        //the integral from a to b, written with expm1 so it stays accurate as theta approaches 1
+        double s=1-theta;
+        double log=Math.log(b/a);
+        sum+=(s==0) ? log : Math.pow(a,s)*Math.expm1(s*log)/s;
+
+        sum+=(Math.pow(a,-theta)+Math.pow(b,-theta))/2;
+
+        //the derivatives of x^-theta are c1 x^(-theta-1), c3 x^(-theta-3) and c5 x^(-theta-5)
+        double c1=-theta;
+        double c3=c1*(theta+1)*(theta+2);
+        double c5=c3*(theta+3)*(theta+4);
+        sum+=c1*(Math.pow(b,-theta-1)-Math.pow(a,-theta-1))/12;
+        sum-=c3*(Math.pow(b,-theta-3)-Math.pow(a,-theta-3))/720;
+        sum+=c5*(Math.pow(b,-theta-5)-Math.pow(a,-theta-5))/30240;
+        return sum;
+    }
+
+    static String key(long n, double theta)
+    {
+        return theta+":"+n;
+    }
+
+    static Properties load()
+    {
+        if (_zetas==null)
+        {
+            _zetas=new Properties();
+            if (_file.exists())
+            {
+                try (InputStream in=new FileInputStream(_file))
+                {
+                    _zetas.load(in);
+                }
+                catch (IOException e)
+                {
+                    System.err.println("WARNING: Could not read zeta constants from "+_file+": "+e);
+                }
+            }
+        }
+        return _zetas;
+    }
+
+    static void store(Properties zetas)
+    {
+        //write a new file and move it over the old one, so another client never reads half of it
+        try
+        {
+            File dir=_file.getAbsoluteFile().getParentFile();
+            File tmp=File.createTempFile(_file.getName(),".tmp",dir);
+            try (OutputStream out=new FileOutputStream(tmp))
+            {
+                zetas.store(out,"Zipfian zeta constants, theta:itemcount=zeta");
+            }
+            Files.move(tmp.toPath(),_file.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            System.err.println("WARNING: Could not write zeta constants to "+_file+": "+e);
+        }
+    }
+}
@@ -17,7 +17,7 @@
 
 package com.yahoo.ycsb.generator;
 
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.yahoo.ycsb.Utils;
 
@@ -35,7 +35,8 @@ import com.yahoo.ycsb.Utils;
  * for 100 million objects). This is because certain mathematical values need to be computed to properly generate a zipfian skew, and one of those
  * values (zeta) is a sum sequence from 1 to n, where n is the itemcount. Note that if you increase the number of items in the set, we can compute
  * a new zeta incrementally, so it should be fast unless you have added millions of items. However, if you decrease the number of items, we recompute
- * zeta from scratch, so this can take a long time.
+ * zeta from scratch, so this can take a long time. Long sums are spread over all cores, and if ZetaCache has been given a file, zeta is computed once
+ * per itemcount and zipfian constant and read from the file on later runs.
  *
  * The algorithm used here is from "Quickly Generating Billion-Record Synthetic Databases", Jim Gray et al, SIGMOD 1994.
  */
@@ -61,12 +62,27 @@ public class ZipfianGenerator extends IntegerGenerator
     /**
      * Computed parameters for generating the distribution.
      */
-    double alpha,zetan,eta,theta,zeta2theta;
+    double alpha,theta,zeta2theta;
 
     /**
-     * The number of items used to compute zetan the last time.
+     * The parameters that depend on the number of items: zetan, eta, and the number of items zetan was computed for.
+     * A State is never changed; a thread that sees a new itemcount computes a new one from the current one and
+     * swaps it in, so threads drawing from the distribution never wait for each other.
      */
-    long countforzeta;
+    static final class State
+    {
+        final long countforzeta;
+        final double zetan,eta;
+
+        State(long _countforzeta, double _zetan, double _eta)
+        {
+            countforzeta=_countforzeta;
+            zetan=_zetan;
+            eta=_eta;
+        }
+    }
+
+    final AtomicReference<State> state=new AtomicReference<State>();
 
     /**
      * Flag to prevent problems. If you increase the number of items the zipfian generator is allowed to choose from, this code will incrementally compute a new zeta
@@ -138,14 +154,11 @@ public class ZipfianGenerator extends IntegerGenerator
 
         theta=zipfianconstant;
 
-        zeta2theta=zeta(2,theta);
+        zeta2theta=zetastatic(2,theta);
 
 
         alpha=1.0/(1.0-theta);
-        //zetan=zeta(items,theta);
-        zetan=_zetan;
-        countforzeta=items;
-        eta=(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan);
+        state.set(newState(items,_zetan));
 
         //System.out.println("XXXX 3 XXXX");
         nextInt();
@@ -155,16 +168,11 @@ public class ZipfianGenerator extends IntegerGenerator
     /**************************************************************************/
 
     /**
-     * Compute the zeta constant needed for the distribution. Do this from scratch for a distribution with n items, using the
-     * zipfian constant theta. Remember the value of n, so if we change the itemcount, we can recompute zeta.
-     *
-     * @param n The number of items to compute zeta over.
-     * @param theta The zipfian constant.
+     * Make the parameters for itemcount items, given their zeta.
      */
-    double zeta(long n, double theta)
+    State newState(long itemcount, double zetan)
     {
-        countforzeta=n;
-        return zetastatic(n,theta);
+        return new State(itemcount,zetan,(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan));
     }
 
     /**
@@ -175,29 +183,12 @@ public class ZipfianGenerator extends IntegerGenerator
      */
     static double zetastatic(long n, double theta)
     {
-        return zetastatic(0,n,theta,0);
+        return ZetaCache.zeta(n,theta);
     }
 
     /**
      * Compute the zeta constant needed for the distribution. Do this incrementally for a distribution that
-     * has n items now but used to have st items. Use the zipfian constant theta. Remember the new value of
-     * n so that if we change the itemcount, we'll know to recompute zeta.
-     *
-     * @param st The number of items used to compute the last initialsum
-     * @param n The number of items to compute zeta over.
-     * @param theta The zipfian constant.
-     * @param initialsum The value of zeta we are computing incrementally from.
-     */
-    double zeta(long st, long n, double theta, double initialsum)
-    {
-        countforzeta=n;
-        return zetastatic(st,n,theta,initialsum);
-    }
-
-    /**
-     * Compute the zeta constant needed for the distribution. Do this incrementally for a distribution that
-     * has n items now but used to have st items. Use the zipfian constant theta. Remember the new value of
-     * n so that if we change the itemcount, we'll know to recompute zeta.
+     * has n items now but used to have st items. Use the zipfian constant theta.
      * @param st The number of items used to compute the last initialsum
      * @param n The number of items to compute zeta over.
      * @param theta The zipfian constant.
@@ -205,16 +196,7 @@ public class ZipfianGenerator extends IntegerGenerator
      */
     static double zetastatic(long st, long n, double theta, double initialsum)
     {
-        double sum=initialsum;
-        for (long i=st; i<n; i++)
-        {
-
-            sum+=1/(Math.pow(i+1,theta));
-        }
-
-        //System.out.println("countforzeta="+countforzeta);
-
-        return sum;
+        return ZetaCache.sum(st,n,theta,initialsum);
     }
 
     /****************************************************************************************/
@@ -240,51 +222,60 @@ public class ZipfianGenerator extends IntegerGenerator
     {
         //from "Quickly Generating Billion-Record Synthetic Databases", Jim Gray et al, SIGMOD 1994
 
-        if (itemcount!=countforzeta)
+        State s=state.get();
+        while (itemcount!=s.countforzeta)
         {
-
             //have to recompute zetan and eta, since they depend on itemcount
-            synchronized(this)
+            State next;
+            if (itemcount>s.countforzeta)
+            {
+                //we have added more items. can compute zetan incrementally, which is cheaper
+                next=newState(itemcount,zetastatic(s.countforzeta,itemcount,theta,s.zetan));
+            }
+            else if (allowitemcountdecrease)
+            {
+                //have to start over with zetan
+                //note : for large itemsets, this is very slow. so don't do it!
+
+                //TODO: can also have a negative incremental computation, e.g. if you decrease the number of items, then just subtract
+                //the zeta sequence terms for the items that went away. This would be faster than recomputing from scratch when the number of items
+                //decreases
+
+                System.err.println("WARNING: Recomputing Zipfian distribtion. This is slow and should be avoided. (itemcount="+itemcount+" countforzeta="+s.countforzeta+")");
+
+                next=newState(itemcount,zetastatic(itemcount,theta));
+            }
+            else
+            {
+                //another thread has already grown the distribution past itemcount; draw from that
+                break;
+            }
+
+            //if another thread got there first, start over from what it computed
+            if (state.compareAndSet(s,next))
+            {
+                s=next;
+            }
+            else
             {
-                if (itemcount>countforzeta)
-                {
-                    //System.err.println("WARNING: Incrementally recomputing Zipfian distribtion. (itemcount="+itemcount+" countforzeta="+countforzeta+")");
-
-                    //we have added more items. can compute zetan incrementally, which is cheaper
-                    zetan=zeta(countforzeta,itemcount,theta,zetan);
-                    eta=(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan);
-                }
-                else if ( (itemcount<countforzeta) && (allowitemcountdecrease) )
-                {
-                    //have to start over with zetan
-                    //note : for large itemsets, this is very slow. so don't do it!
-
-                    //TODO: can also have a negative incremental computation, e.g. if you decrease the number of items, then just subtract
-                    //the zeta sequence terms for the items that went away. This would be faster than recomputing from scratch when the number of items
-                    //decreases
-
-                    System.err.println("WARNING: Recomputing Zipfian distribtion. This is slow and should be avoided. (itemcount="+itemcount+" countforzeta="+countforzeta+")");
-
-                    zetan=zeta(itemcount,theta);
-                    eta=(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan);
-                }
+                s=state.get();
             }
         }
 
         double u=Utils.random().nextDouble();
-        double uz=u*zetan;
+        double uz=u*s.zetan;
 
         if (uz<1.0)
         {
             return 0;
         }
 
-        if (uz<1.0+Math.pow(0.5,theta))
+        if (uz<zeta2theta)
         {
             return 1;
         }
 
-        long ret=base+(long)((itemcount) * Math.pow(eta*u - eta + 1, alpha));
+        long ret=base+(long)((itemcount) * Math.pow(s.eta*u - s.eta + 1, alpha));
         setLastInt((int)ret);
         return ret;
     }
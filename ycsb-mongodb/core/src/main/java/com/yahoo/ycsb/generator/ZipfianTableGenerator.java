@@ -0,0 +1,147 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import com.yahoo.ycsb.Utils;
+
+/**
+ * A zipfian generator that draws the same distribution as ZipfianGenerator, without calling Math.pow per draw.
+ *
+ * ZipfianGenerator maps a uniform u to an item with Gray's closed form, itemcount*(eta*u-eta+1)^alpha. This
+ * class evaluates that function once, at TABLE_SIZE+1 evenly spaced values of u, and a draw interpolates linearly
+ * between the two nearest. The function is smooth, so the interpolated item is within a few millionths of the
+ * computed one (for the default zipfian constant). Items 0 and 1, which Gray's algorithm picks by comparing u
+ * with fixed thresholds, are picked the same way.
+ *
+ * Unlike ZipfianGenerator, the number of items is fixed at construction.
+ */
+public class ZipfianTableGenerator extends IntegerGenerator
+{
+    /**
+     * The number of intervals the inverse distribution is split into.
+     */
+    public static final int TABLE_SIZE=4096;
+
+    /**
+     * Min item to generate, and the number of items.
+     */
+    long base,items;
+
+    /**
+     * Below u0 the item is base, below u1 it is base+1.
+     */
+    double u0,u1;
+
+    /**
+     * The inverse distribution, as a fraction of items, at u=u1+i/scale.
+     */
+    double[] table;
+    double scale;
+
+    /**
+     * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant.
+     *
+     * @param min The smallest integer to generate in the sequence.
+     * @param max The largest integer to generate in the sequence.
+     * @param zipfianconstant The zipfian constant to use.
+     */
+    public ZipfianTableGenerator(long min, long max, double zipfianconstant)
+    {
+        this(min,max,zipfianconstant,ZetaCache.zeta(max-min+1,zipfianconstant));
+    }
+
+    /**
+     * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant,
+     * using the precomputed value of zeta.
+     *
+     * @param min The smallest integer to generate in the sequence.
+     * @param max The largest integer to generate in the sequence.
+     * @param theta The zipfian constant to use.
+     * @param zetan The precomputed zeta constant.
+     */
+    public ZipfianTableGenerator(long min, long max, double theta, double zetan)
+    {
+        base=min;
+        items=max-min+1;
+
+        //the same constants as ZipfianGenerator
+        double zeta2theta=ZetaCache.sum(0,2,theta,0);
+        double alpha=1.0/(1.0-theta);
+        double eta=(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan);
+
+        u0=1.0/zetan;
+        u1=zeta2theta/zetan;
+        scale=TABLE_SIZE/(1.0-u1);
+        table=new double[TABLE_SIZE+1];
+        for (int i=0; i<=TABLE_SIZE; i++)
+        {
+            double u=u1+i/scale;
+            table[i]=Math.pow(eta*u-eta+1,alpha);
+        }
+        //the last entry is for u=1, which nextDouble() never returns; keep the items below max
+        table[TABLE_SIZE]=Math.min(table[TABLE_SIZE],Math.nextDown(1.0));
+
+        nextInt();
+    }
+
+    /**
+     * Generate the next item as a long. Item base is the most popular, base+1 the next most popular, and so on.
+     */
+    public long nextLong()
+    {
+        double u=Utils.random().nextDouble();
+        long ret;
+        if (u<u0)
+        {
+            ret=base;
+        }
+        else if (u<u1)
+        {
+            ret=base+1;
+        }
+        else
+        {
+            double x=(u-u1)*scale;
+            int i=Math.min((int)x,TABLE_SIZE-1);
+            double f=table[i]+(x-i)*(table[i+1]-table[i]);
+            ret=base+Math.min((long)(items*f),items-1);
+        }
+        setLastInt((int)ret);
+        return ret;
+    }
+
+    @Override
+    public int nextInt()
+    {
+        return (int)nextLong();
+    }
+
+    /**
+     * The mean of the items drawn: items base and base+1 with the probability of their thresholds, and above u1
+     * the integral of the interpolated table, which is exact for the linear pieces. Truncating to an item loses
+     * half an item on average.
+     */
+    @Override
+    public double mean()
+    {
+        double integral=0;
+        for (int i=0; i<TABLE_SIZE; i++)
+        {
+            integral+=(table[i]+table[i+1])/2;
+        }
+        return base+(u1-u0)+(1.0-u1)*(items*integral/TABLE_SIZE-0.5);
+    }
+}
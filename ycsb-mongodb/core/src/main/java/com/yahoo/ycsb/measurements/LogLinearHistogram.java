@@ -0,0 +1,306 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A high dynamic range histogram of non-negative values, laid out the same way as Gil Tene's HdrHistogram.
+ *
+ * Values are grouped into buckets whose width doubles with every power of two, and every bucket is split into
+ * enough linear sub-buckets to keep the requested number of significant decimal digits. The memory used is fixed
+ * at construction and does not depend on the number or the magnitude of the recorded values; with 3 significant
+ * digits and values up to Integer.MAX_VALUE it is about 180KB.
+ *
+ * This class is not thread safe.
+ */
+public class LogLinearHistogram
+{
+    final int significantdigits;
+    final long highesttrackable;
+
+    final int subbuckethalfcountmagnitude;
+    final int subbuckethalfcount;
+    final int subbucketcount;
+    final long subbucketmask;
+    final int leadingzerocountbase;
+
+    final long[] counts;
+    long totalcount;
+
+    /**
+     * @param highesttrackable The largest value that can be recorded. Larger values are clamped to it.
+     * @param significantdigits The number of significant decimal digits to keep, between 1 and 5.
+     */
+    public LogLinearHistogram(long highesttrackable, int significantdigits)
+    {
+        if ( (significantdigits<1) || (significantdigits>5) )
+        {
+            throw new IllegalArgumentException("significant digits must be between 1 and 5, got "+significantdigits);
+        }
+        if (highesttrackable<2)
+        {
+            throw new IllegalArgumentException("highest trackable value must be at least 2, got "+highesttrackable);
+        }
+
+        this.significantdigits=significantdigits;
+        this.highesttrackable=highesttrackable;
+
+        long largestsingleunit=2*(long)Math.pow(10,significantdigits);
+        int subbucketcountmagnitude=64-Long.numberOfLeadingZeros(largestsingleunit-1);
+        subbuckethalfcountmagnitude=Math.max(subbucketcountmagnitude,1)-1;
+        subbucketcount=1<<(subbuckethalfcountmagnitude+1);
+        subbuckethalfcount=subbucketcount/2;
+        subbucketmask=subbucketcount-1;
+        leadingzerocountbase=63-subbuckethalfcountmagnitude;
+
+        // the number of power-of-two buckets needed to cover highesttrackable
+        long smallestuntrackable=subbucketcount;
+        int bucketcount=1;
+        while (smallestuntrackable<=highesttrackable)
+        {
+            if (smallestuntrackable>Long.MAX_VALUE/2)
+            {
+                bucketcount++;
+                break;
+            }
+            smallestuntrackable<<=1;
+            bucketcount++;
+        }
+
+        counts=new long[(bucketcount+1)*subbuckethalfcount];
+        totalcount=0;
+    }
+
+    int countsIndex(long value)
+    {
+        int bucketindex=leadingzerocountbase-Long.numberOfLeadingZeros(value|subbucketmask);
+        int subbucketindex=(int)(value>>>bucketindex);
+        return ((bucketindex+1)<<subbuckethalfcountmagnitude)+(subbucketindex-subbuckethalfcount);
+    }
+
+    /**
+     * @return the smallest value that is counted in the given slot of the counts array.
+     */
+    long valueFromIndex(int index)
+    {
+        int bucketindex=(index>>subbuckethalfcountmagnitude)-1;
+        int subbucketindex=(index&(subbuckethalfcount-1))+subbuckethalfcount;
+        if (bucketindex<0)
+        {
+            subbucketindex-=subbuckethalfcount;
+            bucketindex=0;
+        }
+        return ((long)subbucketindex)<<bucketindex;
+    }
+
+    /**
+     * @return the largest value that would be counted in the same slot as the given value.
+     */
+    public long highestEquivalentValue(long value)
+    {
+        int bucketindex=leadingzerocountbase-Long.numberOfLeadingZeros(value|subbucketmask);
+        int subbucketindex=(int)(value>>>bucketindex);
+        long lowest=((long)subbucketindex)<<bucketindex;
+        long range=1L<<(bucketindex+((subbucketindex>=subbucketcount) ? 1 : 0));
+        return lowest+range-1;
+    }
+
+    /**
+     * Add count values to a slot of the counts array, e.g. one that was saved from another histogram with the
+     * same layout.
+     */
+    void addAtSlot(int slot, long count)
+    {
+        counts[slot]+=count;
+        totalcount+=count;
+    }
+
+    /**
+     * Record a value. Negative values are recorded as zero, and values larger than the highest trackable value are
+     * recorded as the highest trackable value.
+     */
+    public void record(long value)
+    {
+        record(value,1);
+    }
+
+    /**
+     * Record a value count times.
+     */
+    public void record(long value, long count)
+    {
+        if (value<0)
+        {
+            value=0;
+        }
+        else if (value>highesttrackable)
+        {
+            value=highesttrackable;
+        }
+        counts[countsIndex(value)]+=count;
+        totalcount+=count;
+    }
+
+    /**
+     * Add all the values recorded by another histogram with the same layout to this one.
+     */
+    public void add(LogLinearHistogram other)
+    {
+        if (other.counts.length!=counts.length || other.significantdigits!=significantdigits)
+        {
+            throw new IllegalArgumentException("Can't add histograms with different layouts");
+        }
+        for (int i=0; i<counts.length; i++)
+        {
+            counts[i]+=other.counts[i];
+        }
+        totalcount+=other.totalcount;
+    }
+
+    /**
+     * Take the values recorded by another histogram with the same layout, which must all have been recorded by
+     * this one too, out of this one. This leaves the values recorded since the other was copied from this one.
+     */
+    public void subtract(LogLinearHistogram other)
+    {
+        if (other.counts.length!=counts.length || other.significantdigits!=significantdigits)
+        {
+            throw new IllegalArgumentException("Can't subtract histograms with different layouts");
+        }
+        for (int i=0; i<counts.length; i++)
+        {
+            counts[i]-=other.counts[i];
+        }
+        totalcount-=other.totalcount;
+    }
+
+    /**
+     * Record the values of this histogram in another one, whatever its layout.
+     */
+    public void addTo(LogLinearHistogram other)
+    {
+        for (int i=0; i<counts.length; i++)
+        {
+            if (counts[i]!=0)
+            {
+                other.record(valueFromIndex(i),counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Write the layout and the non-empty slots of this histogram to a stream.
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        int used=0;
+        for (long count : counts)
+        {
+            if (count!=0)
+            {
+                used++;
+            }
+        }
+
+        out.writeInt(significantdigits);
+        out.writeLong(highesttrackable);
+        out.writeInt(used);
+        for (int i=0; i<counts.length; i++)
+        {
+            if (counts[i]!=0)
+            {
+                out.writeInt(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Replace the values recorded by this histogram with ones written by write() from a histogram with the same
+     * layout.
+     */
+    public void read(DataInput in) throws IOException
+    {
+        int digits=in.readInt();
+        long highest=in.readLong();
+        if (digits!=significantdigits || highest!=highesttrackable)
+        {
+            throw new IOException("Can't read a histogram of "+digits+" digits up to "+highest+" into one of "+
+                    significantdigits+" digits up to "+highesttrackable);
+        }
+
+        reset();
+        int used=in.readInt();
+        for (int i=0; i<used; i++)
+        {
+            int index=in.readInt();
+            if ( (index<0) || (index>=counts.length) )
+            {
+                throw new IOException("Histogram slot "+index+" out of range");
+            }
+            long count=in.readLong();
+            counts[index]+=count;
+            totalcount+=count;
+        }
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset()
+    {
+        Arrays.fill(counts,0);
+        totalcount=0;
+    }
+
+    public long getTotalCount()
+    {
+        return totalcount;
+    }
+
+    /**
+     * Return the value below which the given percentage of the recorded values fall. The value is reported as the
+     * highest value that is equivalent to it within the histogram's precision, so it never understates a latency.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The value at the percentile, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (totalcount==0)
+        {
+            return 0;
+        }
+        double requested=Math.min(Math.max(percentile,0.0),100.0);
+        long countatpercentile=(long)Math.ceil((requested/100.0)*totalcount);
+        countatpercentile=Math.max(countatpercentile,1);
+
+        long total=0;
+        for (int i=0; i<counts.length; i++)
+        {
+            total+=counts[i];
+            if (total>=countatpercentile)
+            {
+                return Math.min(highestEquivalentValue(valueFromIndex(i)),highesttrackable);
+            }
+        }
+        return highesttrackable;
+    }
+}
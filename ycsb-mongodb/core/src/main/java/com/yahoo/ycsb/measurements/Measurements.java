@@ -17,9 +17,15 @@
 
 package com.yahoo.ycsb.measurements;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -31,11 +37,68 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
  */
 public class Measurements
 {
-    private static final String MEASUREMENT_TYPE = "measurementtype";
+    public static final String MEASUREMENT_TYPE = "measurementtype";
 
-    private static final String MEASUREMENT_TYPE_DEFAULT = "histogram";
+    public static final String MEASUREMENT_TYPE_DEFAULT = "histogram";
 
-    static Measurements singleton=null;
+    /**
+     * The file to write a dump of the raw measurements to at the end of the run, see MeasurementsDump. Dumps of
+     * several clients or runs can be merged with com.yahoo.ycsb.MergeMeasurements.
+     */
+    public static final String MEASUREMENT_DUMP_FILE = "measurement.dumpfile";
+
+    /**
+     * If true, every client thread records into its own shard of each measurement, and the shards are merged when
+     * the measurements are summarized or exported. This removes all lock contention from the measurement path.
+     */
+    public static final String MEASUREMENT_THREADLOCAL = "measurement.threadlocal";
+
+    public static final String MEASUREMENT_THREADLOCAL_DEFAULT = "false";
+
+    /**
+     * Which latency to record for every operation: "op" measures from the moment the operation was issued (service
+     * time), "intended" measures from the moment the operation should have been issued according to the target
+     * throughput (response time), and "both" records both. Response times are recorded as "Intended-" followed by
+     * the operation name.
+     */
+    public static final String MEASUREMENT_INTERVAL = "measurement.interval";
+
+    public static final String MEASUREMENT_INTERVAL_DEFAULT = "op";
+
+    static final int INTERVAL_OP = 0;
+    static final int INTERVAL_INTENDED = 1;
+    static final int INTERVAL_BOTH = 2;
+
+    /**
+     * The prefix of the measurements that are timed from the intended start of the operation.
+     */
+    public static final String INTENDED_PREFIX = "Intended-";
+
+    /**
+     * The phases of a run. Only the steady state is measured under the operation names; operations done while
+     * warming up or cooling down are measured under the names prefixed with the prefix of the phase, e.g.
+     * "Warmup-READ", and exported separately.
+     */
+    public enum Phase
+    {
+        WARMUP("Warmup-"),
+        STEADY(""),
+        COOLDOWN("Cooldown-");
+
+        final String prefix;
+
+        Phase(String prefix)
+        {
+            this.prefix=prefix;
+        }
+
+        public String getPrefix()
+        {
+            return prefix;
+        }
+    }
+
+    static volatile Measurements singleton=null;
 
     static Properties measurementproperties=null;
 
@@ -47,36 +110,97 @@ public class Measurements
     /**
      * Return the singleton Measurements object.
      */
-    public synchronized static Measurements getMeasurements()
+    public static Measurements getMeasurements()
+    {
+        Measurements m=singleton;
+        if (m==null)
+        {
+            synchronized(Measurements.class)
+            {
+                if (singleton==null)
+                {
+                    singleton=new Measurements(measurementproperties);
+                }
+                m=singleton;
+            }
+        }
+        return m;
+    }
+
+    ConcurrentHashMap<String,OneMeasurement> data;
+    String measurementtype;
+    boolean threadlocal=false;
+    int measurementinterval=INTERVAL_OP;
+    volatile Phase phase=Phase.STEADY;
+
+    /**
+     * Holds the intended start time of the operation the current thread is executing.
+     */
+    static final class StartTimeHolder
     {
-        if (singleton==null)
+        long time;
+
+        long startTime()
         {
-            singleton=new Measurements(measurementproperties);
+            if (time==0)
+            {
+                return System.nanoTime();
+            }
+            return time;
         }
-        return singleton;
     }
 
-    HashMap<String,OneMeasurement> data;
-    boolean histogram=true;
+    private final ThreadLocal<StartTimeHolder> intendedstarttime=new ThreadLocal<StartTimeHolder>()
+    {
+        @Override
+        protected StartTimeHolder initialValue()
+        {
+            return new StartTimeHolder();
+        }
+    };
 
     private Properties _props;
 
+    /**
+     * The number of operations issued to the database that have not completed yet.
+     */
+    private final LongAdder inflight=new LongAdder();
+
     /**
      * Create a new object with the specified properties.
      */
     public Measurements(Properties props)
     {
-        data=new HashMap<String,OneMeasurement>();
+        data=new ConcurrentHashMap<String,OneMeasurement>();
 
         _props=props;
 
-        if (_props.getProperty(MEASUREMENT_TYPE, MEASUREMENT_TYPE_DEFAULT).compareTo("histogram")==0)
+        measurementtype=_props.getProperty(MEASUREMENT_TYPE, MEASUREMENT_TYPE_DEFAULT);
+
+        threadlocal=Boolean.parseBoolean(_props.getProperty(MEASUREMENT_THREADLOCAL, MEASUREMENT_THREADLOCAL_DEFAULT));
+        if (threadlocal && (measurementtype.compareTo("histogram")!=0) && (measurementtype.compareTo("hdrhistogram")!=0))
         {
-            histogram=true;
+            System.err.println("WARNING: "+MEASUREMENT_THREADLOCAL+" is only supported for histogram measurements, ignoring it.");
+            threadlocal=false;
+        }
+
+        String interval=_props.getProperty(MEASUREMENT_INTERVAL, MEASUREMENT_INTERVAL_DEFAULT);
+        if (interval.compareTo("op")==0)
+        {
+            measurementinterval=INTERVAL_OP;
+        }
+        else if (interval.compareTo("intended")==0)
+        {
+            measurementinterval=INTERVAL_INTENDED;
+        }
+        else if (interval.compareTo("both")==0)
+        {
+            measurementinterval=INTERVAL_BOTH;
         }
         else
         {
-            histogram=false;
+            System.err.println("ERROR: Invalid "+MEASUREMENT_INTERVAL+": '"+interval+"'. Must be [ op | intended | both ]");
+            System.exit(1);
         }
     }
 
@@ -91,7 +215,7 @@ public class Measurements
         initMeasurement("CLEANUP");
     }
 
-    public synchronized void initMeasurement(String op)
+    public void initMeasurement(String op)
     {
         // If we already have a measurement, don't bother with synching
         if (data.containsKey(op))
@@ -106,45 +230,204 @@ public class Measurements
                 return;
             }
 
-            if (histogram)
+            if (threadlocal)
             {
-                data.put(op,new OneMeasurementHistogram(op,_props));
+                data.put(op,new OneMeasurementThreadLocal(op,() -> constructOneMeasurement(op)));
             }
             else
             {
-                data.put(op,new OneMeasurementTimeSeries(op,_props));
+                data.put(op,constructOneMeasurement(op));
             }
         }
 
     }
 
-    /**
-     * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
-     */
-    public synchronized void measure(String operation, int latency)
+    OneMeasurement constructOneMeasurement(String op)
+    {
+        if (measurementtype.compareTo("histogram")==0)
+        {
+            return new OneMeasurementHistogram(op,_props);
+        }
+        else if (measurementtype.compareTo("hdrhistogram")==0)
+        {
+            return new OneMeasurementHdrHistogram(op,_props);
+        }
+        else
+        {
+            return new OneMeasurementTimeSeries(op,_props);
+        }
+    }
+
+    OneMeasurement getOrInit(String operation)
     {
         OneMeasurement m = data.get(operation);
         if (m == null) {
-            // Operation not initialized, optionally initialize on demand
             initMeasurement(operation);
             m = data.get(operation);
         }
-        if (m != null) { // Check again in case initialization failed
-            m.measure(latency);
-        } else {
-            // Handle the case where the operation could not be initialized
-            System.err.println("Measurement for operation '" + operation + "' could not be initialized.");
+        return m;
+    }
+
+    /**
+     * The measurements of one operation, resolved once so that recording into them needs no lookup by name. Which
+     * latencies a handle records follows the measurement.interval property, like the methods of Measurements that
+     * take the operation name.
+     */
+    public static final class Handle
+    {
+        private final Measurements _measurements;
+        private final OneMeasurement _op;
+        private final OneMeasurement _intended;
+        private final OneMeasurement _returncodes;
+
+        //the names the operation is measured under in each phase, by the ordinal of the phase
+        private final String[] _opnames;
+        private final String[] _intendednames;
+
+        Handle(Measurements measurements, String operation, OneMeasurement op, OneMeasurement intended)
+        {
+            _measurements=measurements;
+            _op=op;
+            _intended=intended;
+            _returncodes=(op!=null) ? op : intended;
+
+            Phase[] phases=Phase.values();
+            _opnames=new String[phases.length];
+            _intendednames=new String[phases.length];
+            for (Phase p : phases)
+            {
+                _opnames[p.ordinal()]=p.prefix+operation;
+                _intendednames[p.ordinal()]=p.prefix+INTENDED_PREFIX+operation;
+            }
+        }
+
+        /**
+         * Report the latency of an operation measured from when it was issued.
+         */
+        public void measure(int latency)
+        {
+            if (_op!=null)
+            {
+                Phase phase=_measurements.phase;
+                ((phase==Phase.STEADY) ? _op : _measurements.getOrInit(_opnames[phase.ordinal()])).measure(latency);
+            }
+        }
+
+        /**
+         * Report the latency of an operation measured from its intended start time.
+         */
+        public void measureIntended(int latency)
+        {
+            if (_intended!=null)
+            {
+                Phase phase=_measurements.phase;
+                ((phase==Phase.STEADY) ? _intended : _measurements.getOrInit(_intendednames[phase.ordinal()])).measure(latency);
+            }
+        }
+
+        /**
+         * Report a return code for a single DB operation.
+         */
+        public void reportReturnCode(int code)
+        {
+            Phase phase=_measurements.phase;
+            if (phase==Phase.STEADY)
+            {
+                _returncodes.reportReturnCode(code);
+            }
+            else
+            {
+                String[] names=(_op!=null) ? _opnames : _intendednames;
+                _measurements.getOrInit(names[phase.ordinal()]).reportReturnCode(code);
+            }
+        }
+    }
+
+    /**
+     * Get a handle on the measurements of an operation, creating them if needed.
+     */
+    public Handle getHandle(String operation)
+    {
+        OneMeasurement op=(measurementinterval!=INTERVAL_INTENDED) ? getOrInit(operation) : null;
+        OneMeasurement intended=(measurementinterval!=INTERVAL_OP) ? getOrInit(INTENDED_PREFIX+operation) : null;
+        return new Handle(this,operation,op,intended);
+    }
+
+    /**
+     * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
+     * The latency is the time from when the operation was issued; it is ignored if only intended latencies are recorded.
+     */
+    public void measure(String operation, int latency)
+    {
+        if (measurementinterval==INTERVAL_INTENDED)
+        {
+            return;
+        }
+        getOrInit(named(operation)).measure(latency);
+    }
+
+    /**
+     * Report the latency of an operation measured from its intended start time, see setIntendedStartTimeNs(). It
+     * is recorded as "Intended-" followed by the operation name, unless only issue-time latencies are recorded.
+     */
+    public void measureIntended(String operation, int latency)
+    {
+        if (measurementinterval==INTERVAL_OP)
+        {
+            return;
         }
-//        try
-//        {
-//            data.get(operation).measure(latency);
-//        }
-//        catch (java.lang.ArrayIndexOutOfBoundsException e)
-//        {
-//            System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
-//            e.printStackTrace();
-//            e.printStackTrace(System.out);
-//        }
+        getOrInit(named(INTENDED_PREFIX+operation)).measure(latency);
+    }
+
+    /**
+     * Set the time, as given by System.nanoTime(), at which the operations the current thread is about to execute
+     * should have started. Pass 0 to have the intended start time be the moment the operation is issued.
+     */
+    public void setIntendedStartTimeNs(long time)
+    {
+        intendedstarttime.get().time=time;
+    }
+
+    /**
+     * @return the intended start time of the current thread's operation, or the current time if none was set.
+     */
+    public long getIntendedStartTimeNs()
+    {
+        return intendedstarttime.get().startTime();
+    }
+
+    /**
+     * Switch the phase of the run that the operations measured from now on belong to.
+     */
+    public void setPhase(Phase phase)
+    {
+        this.phase=phase;
+    }
+
+    public Phase getPhase()
+    {
+        return phase;
+    }
+
+    /**
+     * Count an operation as in flight, until endOperation() is called for it.
+     */
+    public void startOperation()
+    {
+        inflight.increment();
+    }
+
+    public void endOperation()
+    {
+        inflight.decrement();
+    }
+
+    /**
+     * @return the number of operations issued to the database that have not completed yet.
+     */
+    public long getOperationsInFlight()
+    {
+        return inflight.sum();
     }
 
     /**
@@ -152,7 +435,21 @@ public class Measurements
      */
     public void reportReturnCode(String operation, int code)
     {
-        data.get(operation).reportReturnCode(code);
+        if (measurementinterval==INTERVAL_INTENDED)
+        {
+            operation=INTENDED_PREFIX+operation;
+        }
+        getOrInit(named(operation)).reportReturnCode(code);
+    }
+
+    /**
+     * The name an operation is measured under in the current phase; only outside the steady state does that take
+     * building a new name.
+     */
+    String named(String operation)
+    {
+        Phase p=phase;
+        return (p==Phase.STEADY) ? operation : p.prefix+operation;
     }
 
     /**
@@ -172,6 +469,72 @@ public class Measurements
         }
     }
 
+    /**
+     * Write the measurements recorded so far to a stream, in a form another process can add to its own with merge().
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        List<Map.Entry<String,OneMeasurement>> measurements=new ArrayList<Map.Entry<String,OneMeasurement>>();
+        for (Map.Entry<String,OneMeasurement> e : data.entrySet())
+        {
+            if (!e.getValue().isEmpty())
+            {
+                measurements.add(e);
+            }
+        }
+
+        out.writeUTF(measurementtype);
+        out.writeInt(measurements.size());
+        for (Map.Entry<String,OneMeasurement> e : measurements)
+        {
+            out.writeUTF(e.getKey());
+            e.getValue().write(out);
+        }
+    }
+
+    /**
+     * Add measurements written by write() to the ones of this object. They must have been recorded with the same
+     * measurement properties.
+     */
+    public void merge(DataInput in) throws IOException
+    {
+        String type=in.readUTF();
+        if (type.compareTo(measurementtype)!=0)
+        {
+            throw new IOException("Can't merge "+type+" measurements into "+measurementtype+" measurements");
+        }
+
+        int count=in.readInt();
+        for (int i=0; i<count; i++)
+        {
+            String name=in.readUTF();
+            OneMeasurement m=constructOneMeasurement(name);
+            m.read(in);
+            OneMeasurement existing=data.putIfAbsent(name,m);
+            if (existing!=null)
+            {
+                existing.merge(m);
+            }
+        }
+    }
+
+    /**
+     * @return the properties the measurements were created with that decide how they are recorded and reported.
+     */
+    Properties getMeasurementProperties()
+    {
+        Properties ret=new Properties();
+        for (String name : _props.stringPropertyNames())
+        {
+            if (name.startsWith("measurement") || name.startsWith("histogram.") ||
+                    name.startsWith("hdrhistogram.") || name.startsWith("timeseries."))
+            {
+                ret.setProperty(name,_props.getProperty(name));
+            }
+        }
+        return ret;
+    }
+
     /**
      * Return a one line summary of the measurements.
      */
@@ -0,0 +1,167 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Dumps of raw measurements, and the sum of several of them.
+ *
+ * A dump holds the histograms themselves, not the percentiles computed from them, so the dumps of clients that
+ * ran side by side, on one machine or many, can be added up and give exactly the percentiles a single client
+ * doing all their operations would have measured. A dump is written in this order, big endian:
+ *
+ * - the 8 bytes of MAGIC and the int FORMAT_VERSION
+ * - the start of the run in milliseconds since the epoch, its length in milliseconds and its operation count, as longs
+ * - the measurement properties of the client: their int count, then each name and value as modified UTF-8
+ * - the measurements as written by Measurements.write(): the measurement type, the int count of measurements,
+ *   then each name followed by the measurement as written by its write()
+ *
+ * The histograms only keep the buckets that were hit. Dumps can only be added up if they were recorded with the
+ * same measurement type and layout, e.g. the same histogram.buckets.
+ */
+public class MeasurementsDump
+{
+    public static final byte[] MAGIC={'Y','C','S','B','M','E','A','S'};
+
+    /**
+     * The version of the format, to be raised whenever it changes.
+     */
+    public static final int FORMAT_VERSION=2;
+
+    /**
+     * Write a dump of the measurements of a run.
+     *
+     * @param start The start of the run, in milliseconds since the epoch.
+     * @param runtime The length of the run, in milliseconds.
+     * @param operations The number of operations done in the run.
+     */
+    public static void write(DataOutput out, Measurements measurements, long start, long runtime, long operations)
+            throws IOException
+    {
+        out.write(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(start);
+        out.writeLong(runtime);
+        out.writeLong(operations);
+
+        Properties props=measurements.getMeasurementProperties();
+        out.writeInt(props.size());
+        for (String name : props.stringPropertyNames())
+        {
+            out.writeUTF(name);
+            out.writeUTF(props.getProperty(name));
+        }
+
+        measurements.write(out);
+    }
+
+    private final Properties _overrides;
+    private Measurements _measurements;
+    private long _start=Long.MAX_VALUE;
+    private long _end=Long.MIN_VALUE;
+    private long _operations;
+
+    /**
+     * Start an empty sum of dumps.
+     *
+     * @param overrides Properties that replace the measurement properties found in the dumps, e.g. the
+     *                  percentiles to report.
+     */
+    public MeasurementsDump(Properties overrides)
+    {
+        _overrides=overrides;
+    }
+
+    /**
+     * Add a dump written by write() to this sum.
+     */
+    public void merge(DataInput in) throws IOException
+    {
+        byte[] magic=new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic,MAGIC))
+        {
+            throw new IOException("Not a measurements dump");
+        }
+        int version=in.readInt();
+        if (version!=FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported measurements dump version "+version+", expected "+FORMAT_VERSION);
+        }
+        long start=in.readLong();
+        long runtime=in.readLong();
+        long operations=in.readLong();
+
+        Properties props=new Properties();
+        int count=in.readInt();
+        for (int i=0; i<count; i++)
+        {
+            String name=in.readUTF();
+            props.setProperty(name,in.readUTF());
+        }
+
+        //the measurements take the properties of the first dump, the others must match them
+        if (_measurements==null)
+        {
+            props.putAll(_overrides);
+            _measurements=new Measurements(props);
+        }
+        _measurements.merge(in);
+
+        _start=Math.min(_start,start);
+        _end=Math.max(_end,start+runtime);
+        _operations+=operations;
+    }
+
+    /**
+     * @return the sum of the measurements of the dumps, or null if none were added.
+     */
+    public Measurements getMeasurements()
+    {
+        return _measurements;
+    }
+
+    /**
+     * @return the earliest start of the runs of the dumps, in milliseconds since the epoch.
+     */
+    public long getStart()
+    {
+        return _start;
+    }
+
+    /**
+     * @return the time from the earliest start to the latest end of the runs of the dumps, in milliseconds. For
+     *         clients on different machines this is only as accurate as their clocks are synchronized.
+     */
+    public long getRunTime()
+    {
+        return (_measurements==null) ? 0 : _end-_start;
+    }
+
+    /**
+     * @return the number of operations of all the runs of the dumps.
+     */
+    public long getOperations()
+    {
+        return _operations;
+    }
+}
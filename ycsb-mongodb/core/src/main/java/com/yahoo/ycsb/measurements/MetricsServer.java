@@ -0,0 +1,259 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the measurements of a running benchmark over HTTP at /metrics, in the Prometheus text format, so they can
+ * be scraped and graphed while the run is going on, e.g. next to the metrics of the database servers.
+ *
+ * It reports the operations done so far, the throughput and the latency percentiles of each operation since the
+ * previous scrape, the return codes and errors of each operation so far, and the operations in flight. Scraped
+ * every second, the percentiles show the tail latency of every second of the run. If several scrapers share the
+ * endpoint, each sees the throughput and the percentiles since the previous scrape by any of them.
+ *
+ * Time series measurements only report the latencies of their intervals that have ended.
+ */
+public class MetricsServer
+{
+    /**
+     * The port to serve the metrics on. Unset, they are not served.
+     */
+    public static final String PORT_PROPERTY="metrics.port";
+
+    /**
+     * Comma separated list of the latency percentiles to report.
+     */
+    public static final String PERCENTILES_PROPERTY="metrics.percentiles";
+    public static final String PERCENTILES_PROPERTY_DEFAULT="50,95,99,99.9";
+
+    static final int SIGNIFICANT_DIGITS=3;
+
+    final Measurements _measurements;
+    final LongSupplier _operations;
+    final double[] _percentiles;
+    HttpServer _server;
+
+    //what the previous scrape saw
+    long _lasttime;
+    long _lastoperations;
+    Map<String,Latencies> _latencies=new HashMap<String,Latencies>();
+
+    /**
+     * The histograms kept for one measurement from scrape to scrape, so that a scrape allocates none.
+     */
+    static final class Latencies
+    {
+        //all the latencies recorded up to this scrape and up to the previous one, and the difference
+        LogLinearHistogram total=new LogLinearHistogram(Integer.MAX_VALUE,SIGNIFICANT_DIGITS);
+        LogLinearHistogram last=new LogLinearHistogram(Integer.MAX_VALUE,SIGNIFICANT_DIGITS);
+        final LogLinearHistogram window=new LogLinearHistogram(Integer.MAX_VALUE,SIGNIFICANT_DIGITS);
+
+        /**
+         * Take the latencies recorded so far from a measurement, leaving those since the previous scrape in
+         * window, and add its return codes so far to codes.
+         */
+        void update(OneMeasurement measurement, Map<Integer,long[]> codes)
+        {
+            LogLinearHistogram previous=total;
+            total=last;
+            last=previous;
+            total.reset();
+            measurement.addTo(total,codes);
+            window.reset();
+            window.add(total);
+            window.subtract(last);
+        }
+    }
+
+    MetricsServer(Measurements measurements, LongSupplier operations, double[] percentiles)
+    {
+        _measurements=measurements;
+        _operations=operations;
+        _percentiles=percentiles;
+        _lasttime=System.nanoTime();
+    }
+
+    /**
+     * Start serving the metrics if the metrics.port property is set.
+     *
+     * @param operations Counts the operations done so far by all the client threads.
+     * @return the server, or null if the metrics.port property isn't set.
+     */
+    public static MetricsServer start(Properties props, Measurements measurements, LongSupplier operations) throws IOException
+    {
+        String port=props.getProperty(PORT_PROPERTY);
+        if (port==null)
+        {
+            return null;
+        }
+
+        final MetricsServer metrics=new MetricsServer(measurements,operations,
+                OneMeasurementHdrHistogram.getPercentiles(props.getProperty(PERCENTILES_PROPERTY,PERCENTILES_PROPERTY_DEFAULT)));
+        metrics._server=HttpServer.create(new InetSocketAddress(Integer.parseInt(port)),0);
+        metrics._server.createContext("/metrics",exchange -> metrics.handle(exchange));
+        metrics._server.start();
+        System.err.println("Serving metrics at http://localhost:"+metrics.getPort()+"/metrics");
+        return metrics;
+    }
+
+    public int getPort()
+    {
+        return _server.getAddress().getPort();
+    }
+
+    public void stop()
+    {
+        _server.stop(0);
+    }
+
+    void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            byte[] body=scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type","text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200,body.length);
+            try (OutputStream out=exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    static String label(String value)
+    {
+        return "\""+value.replace("\\","\\\\").replace("\"","\\\"").replace("\n","\\n")+"\"";
+    }
+
+    static String number(double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return "NaN";
+        }
+        return (value==Math.rint(value) && Math.abs(value)<1e15) ? Long.toString((long)value) : Double.toString(value);
+    }
+
+    /**
+     * @return the current metrics in the Prometheus text format.
+     */
+    synchronized String scrape()
+    {
+        long now=System.nanoTime();
+        long operations=_operations.getAsLong();
+        double throughput=(operations-_lastoperations)*1e9/Math.max(now-_lasttime,1);
+        _lasttime=now;
+        _lastoperations=operations;
+
+        //the latencies since the previous scrape and the return codes so far of each measurement, by name
+        Map<String,LogLinearHistogram> windows=new TreeMap<String,LogLinearHistogram>();
+        Map<String,Long> counts=new HashMap<String,Long>();
+        Map<String,Map<Integer,long[]>> returncodes=new TreeMap<String,Map<Integer,long[]>>();
+        for (Map.Entry<String,OneMeasurement> e : _measurements.data.entrySet())
+        {
+            //most measurements, e.g. of the consistencies the workload doesn't use, never record anything
+            if (e.getValue().isEmpty())
+            {
+                continue;
+            }
+
+            Latencies latencies=_latencies.get(e.getKey());
+            if (latencies==null)
+            {
+                latencies=new Latencies();
+                _latencies.put(e.getKey(),latencies);
+            }
+            Map<Integer,long[]> codes=new TreeMap<Integer,long[]>();
+            latencies.update(e.getValue(),codes);
+            windows.put(e.getKey(),latencies.window);
+            counts.put(e.getKey(),latencies.total.getTotalCount());
+            returncodes.put(e.getKey(),codes);
+        }
+
+        StringBuilder ret=new StringBuilder();
+        ret.append("# HELP ycsb_operations_total Operations done by the client threads.\n");
+        ret.append("# TYPE ycsb_operations_total counter\n");
+        ret.append("ycsb_operations_total ").append(operations).append('\n');
+        ret.append("# HELP ycsb_throughput Operations per second since the previous scrape.\n");
+        ret.append("# TYPE ycsb_throughput gauge\n");
+        ret.append("ycsb_throughput ").append(number(throughput)).append('\n');
+        ret.append("# HELP ycsb_operations_in_flight Operations issued to the database that have not completed.\n");
+        ret.append("# TYPE ycsb_operations_in_flight gauge\n");
+        ret.append("ycsb_operations_in_flight ").append(_measurements.getOperationsInFlight()).append('\n');
+
+        ret.append("# HELP ycsb_latency_microseconds Latency of the operations since the previous scrape.\n");
+        ret.append("# TYPE ycsb_latency_microseconds summary\n");
+        for (Map.Entry<String,LogLinearHistogram> e : windows.entrySet())
+        {
+            String operation=label(e.getKey());
+            LogLinearHistogram window=e.getValue();
+            for (double percentile : _percentiles)
+            {
+                double value=(window.getTotalCount()==0) ? Double.NaN : window.getValueAtPercentile(percentile);
+                ret.append("ycsb_latency_microseconds{operation=").append(operation).append(",quantile=\"")
+                        .append(BigDecimal.valueOf(percentile).movePointLeft(2).stripTrailingZeros().toPlainString()).append("\"} ").append(number(value)).append('\n');
+            }
+            ret.append("ycsb_latency_microseconds_count{operation=").append(operation).append("} ")
+                    .append(counts.get(e.getKey())).append('\n');
+        }
+
+        ret.append("# HELP ycsb_return_codes_total Operations by return code.\n");
+        ret.append("# TYPE ycsb_return_codes_total counter\n");
+        for (Map.Entry<String,Map<Integer,long[]>> e : returncodes.entrySet())
+        {
+            for (Map.Entry<Integer,long[]> code : e.getValue().entrySet())
+            {
+                ret.append("ycsb_return_codes_total{operation=").append(label(e.getKey())).append(",code=\"")
+                        .append(code.getKey()).append("\"} ").append(code.getValue()[0]).append('\n');
+            }
+        }
+
+        ret.append("# HELP ycsb_errors_total Operations that returned an error.\n");
+        ret.append("# TYPE ycsb_errors_total counter\n");
+        for (Map.Entry<String,Map<Integer,long[]>> e : returncodes.entrySet())
+        {
+            long errors=0;
+            for (Map.Entry<Integer,long[]> code : e.getValue().entrySet())
+            {
+                if (code.getKey()!=0)
+                {
+                    errors+=code.getValue()[0];
+                }
+            }
+            ret.append("ycsb_errors_total{operation=").append(label(e.getKey())).append("} ").append(errors).append('\n');
+        }
+        return ret.toString();
+    }
+}
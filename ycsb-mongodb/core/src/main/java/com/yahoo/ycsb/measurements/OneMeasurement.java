@@ -17,7 +17,10 @@
 
 package com.yahoo.ycsb.measurements;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Map;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -47,6 +50,76 @@ public abstract class OneMeasurement {
 
     public abstract boolean isEmpty();
 
+    /**
+     * Fold the measurements recorded by another instance of the same type into this one. This is how per-thread
+     * shards are combined when they are exported, and how the measurements of several processes are combined.
+     *
+     * @param other The measurement to fold into this one. It must have been created with the same properties.
+     */
+    public abstract void merge(OneMeasurement other);
+
+    /**
+     * Write what merge() combines to a stream, so that another process can read it back with read() and merge it
+     * with its own measurements.
+     */
+    public abstract void write(DataOutput out) throws IOException;
+
+    /**
+     * Replace the measurements of this instance, which must not have recorded anything yet, with ones written by
+     * write().
+     */
+    public abstract void read(DataInput in) throws IOException;
+
+    /**
+     * Add the latencies and the return codes recorded so far to a histogram and to counts by return code, e.g. to
+     * report them while the run is going on. Measurement types that keep no histogram don't override it.
+     */
+    void addTo(LogLinearHistogram latencies, Map<Integer,long[]> returncodes)
+    {
+    }
+
+    static void addReturnCodes(Map<Integer,int[]> from, Map<Integer,long[]> to)
+    {
+        for (Map.Entry<Integer,int[]> e : from.entrySet())
+        {
+            long[] val=to.get(e.getKey());
+            if (val==null)
+            {
+                val=new long[1];
+                to.put(e.getKey(),val);
+            }
+            val[0]+=e.getValue()[0];
+        }
+    }
+
+    static void writeReturnCodes(DataOutput out, Map<Integer,int[]> returncodes) throws IOException
+    {
+        out.writeInt(returncodes.size());
+        for (Map.Entry<Integer,int[]> e : returncodes.entrySet())
+        {
+            out.writeInt(e.getKey());
+            out.writeInt(e.getValue()[0]);
+        }
+    }
+
+    static void readReturnCodes(DataInput in, Map<Integer,int[]> returncodes) throws IOException
+    {
+        returncodes.clear();
+        int count=in.readInt();
+        for (int i=0; i<count; i++)
+        {
+            int code=in.readInt();
+            returncodes.put(code,new int[] {in.readInt()});
+        }
+    }
+
+    /**
+     * Forget the windowed stats reported by getSummary(), without producing a summary.
+     */
+    void resetWindow()
+    {
+    }
+
   /**
    * Export the current measurements to a suitable format.
    *
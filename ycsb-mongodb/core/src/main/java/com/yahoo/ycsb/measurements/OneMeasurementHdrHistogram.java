@@ -0,0 +1,266 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Take measurements and maintain a high dynamic range histogram of a given metric, such as READ LATENCY.
+ *
+ * Unlike OneMeasurementHistogram there is no overflow bucket: every latency up to Integer.MAX_VALUE microseconds
+ * is kept with the configured number of significant digits, so tail percentiles stay accurate whatever their
+ * magnitude.
+ */
+public class OneMeasurementHdrHistogram extends OneMeasurement
+{
+    /**
+     * The number of significant decimal digits kept for every recorded latency, between 1 and 5.
+     */
+    public static final String SIGNIFICANT_DIGITS="hdrhistogram.significantdigits";
+    public static final String SIGNIFICANT_DIGITS_DEFAULT="3";
+
+    /**
+     * Comma separated list of the percentiles to export.
+     */
+    public static final String PERCENTILES="hdrhistogram.percentiles";
+    public static final String PERCENTILES_DEFAULT="50,90,99,99.9,99.99";
+
+    LogLinearHistogram histogram;
+    double[] percentiles;
+    long totallatency;
+
+    //keep a windowed version of these stats for printing status
+    int windowoperations;
+    long windowtotallatency;
+
+    int min;
+    int max;
+    HashMap<Integer,int[]> returncodes;
+
+    public OneMeasurementHdrHistogram(String name, Properties props)
+    {
+        super(name);
+        int digits=Integer.parseInt(props.getProperty(SIGNIFICANT_DIGITS, SIGNIFICANT_DIGITS_DEFAULT));
+        histogram=new LogLinearHistogram(Integer.MAX_VALUE, digits);
+        percentiles=getPercentiles(props.getProperty(PERCENTILES, PERCENTILES_DEFAULT));
+        totallatency=0;
+        windowoperations=0;
+        windowtotallatency=0;
+        min=-1;
+        max=-1;
+        returncodes=new HashMap<Integer,int[]>();
+    }
+
+    static double[] getPercentiles(String percentilestring)
+    {
+        String[] tokens=percentilestring.split(",");
+        double[] ret=new double[tokens.length];
+        for (int i=0; i<tokens.length; i++)
+        {
+            ret[i]=Double.parseDouble(tokens[i].trim());
+        }
+        return ret;
+    }
+
+    /**
+     * Helper method to get the name of a percentile in the style of the other measurements, e.g. "99th" for 99
+     * and "99.9" for 99.9.
+     */
+    static String getPercentileName(double percentile)
+    {
+        if (percentile!=Math.floor(percentile))
+        {
+            return new DecimalFormat("#.####").format(percentile);
+        }
+
+        int p=(int)percentile;
+        String suffix;
+        if ( (p%100>=11) && (p%100<=13) )
+        {
+            suffix="th";
+        }
+        else if (p%10==1)
+        {
+            suffix="st";
+        }
+        else if (p%10==2)
+        {
+            suffix="nd";
+        }
+        else if (p%10==3)
+        {
+            suffix="rd";
+        }
+        else
+        {
+            suffix="th";
+        }
+        return p+suffix;
+    }
+
+    /* (non-Javadoc)
+     * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
+     */
+    public synchronized void reportReturnCode(int code)
+    {
+        Integer Icode=code;
+        int[] val=returncodes.get(Icode);
+        if (val==null)
+        {
+            val=new int[1];
+            returncodes.put(Icode,val);
+        }
+        val[0]++;
+    }
+
+    /* (non-Javadoc)
+     * @see com.yahoo.ycsb.OneMeasurement#measure(int)
+     */
+    public synchronized void measure(int latency)
+    {
+        histogram.record(latency);
+        totallatency+=latency;
+        windowoperations++;
+        windowtotallatency+=latency;
+
+        if ( (min<0) || (latency<min) )
+        {
+            min=latency;
+        }
+
+        if ( (max<0) || (latency>max) )
+        {
+            max=latency;
+        }
+    }
+
+    @Override
+    public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
+    {
+        long operations=histogram.getTotalCount();
+        exporter.write(getName(), "Operations", (int)operations);
+        exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
+        exporter.write(getName(), "MinLatency(us)", min);
+        exporter.write(getName(), "MaxLatency(us)", max);
+
+        for (double percentile : percentiles)
+        {
+            exporter.write(getName(), getPercentileName(percentile)+"PercentileLatency(us)",
+                    (int)histogram.getValueAtPercentile(percentile));
+        }
+
+        for (Integer I : returncodes.keySet())
+        {
+            int[] val=returncodes.get(I);
+            exporter.write(getName(), "Return="+I, val[0]);
+        }
+    }
+
+    @Override
+    public synchronized String getSummary() {
+        if (windowoperations==0)
+        {
+            return "";
+        }
+        DecimalFormat d = new DecimalFormat("#.##");
+        double report=((double)windowtotallatency)/((double)windowoperations);
+        windowtotallatency=0;
+        windowoperations=0;
+        return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
+    }
+
+    @Override
+    public synchronized boolean isEmpty()
+    {
+        return histogram.getTotalCount()==0;
+    }
+
+    @Override
+    public synchronized void merge(OneMeasurement other)
+    {
+        OneMeasurementHdrHistogram h=(OneMeasurementHdrHistogram)other;
+        synchronized(h)
+        {
+            histogram.add(h.histogram);
+            totallatency+=h.totallatency;
+            windowoperations+=h.windowoperations;
+            windowtotallatency+=h.windowtotallatency;
+
+            if ( (h.min>=0) && ((min<0) || (h.min<min)) )
+            {
+                min=h.min;
+            }
+
+            if (h.max>max)
+            {
+                max=h.max;
+            }
+
+            for (Integer I : h.returncodes.keySet())
+            {
+                int[] val=returncodes.get(I);
+                if (val==null)
+                {
+                    val=new int[1];
+                    returncodes.put(I,val);
+                }
+                val[0]+=h.returncodes.get(I)[0];
+            }
+        }
+    }
+
+    @Override
+    synchronized void addTo(LogLinearHistogram latencies, Map<Integer,long[]> codes)
+    {
+        histogram.addTo(latencies);
+        addReturnCodes(returncodes,codes);
+    }
+
+    @Override
+    public synchronized void write(DataOutput out) throws IOException
+    {
+        histogram.write(out);
+        out.writeLong(totallatency);
+        out.writeInt(min);
+        out.writeInt(max);
+        writeReturnCodes(out,returncodes);
+    }
+
+    @Override
+    public synchronized void read(DataInput in) throws IOException
+    {
+        histogram.read(in);
+        totallatency=in.readLong();
+        min=in.readInt();
+        max=in.readInt();
+        readReturnCodes(in,returncodes);
+    }
+
+    @Override
+    synchronized void resetWindow()
+    {
+        windowoperations=0;
+        windowtotallatency=0;
+    }
+}
@@ -17,9 +17,13 @@
 
 package com.yahoo.ycsb.measurements;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
@@ -169,4 +173,130 @@ public class OneMeasurementHistogram extends OneMeasurement
       return operations==0;
     }
 
+    @Override
+    public synchronized void merge(OneMeasurement other)
+    {
+        OneMeasurementHistogram h=(OneMeasurementHistogram)other;
+        if (h._buckets!=_buckets)
+        {
+            throw new IllegalArgumentException("Can't merge histograms with "+h._buckets+" and "+_buckets+" buckets");
+        }
+
+        synchronized(h)
+        {
+            for (int i=0; i<_buckets; i++)
+            {
+                histogram[i]+=h.histogram[i];
+            }
+            histogramoverflow+=h.histogramoverflow;
+            operations+=h.operations;
+            totallatency+=h.totallatency;
+            windowoperations+=h.windowoperations;
+            windowtotallatency+=h.windowtotallatency;
+
+            if ( (h.min>=0) && ((min<0) || (h.min<min)) )
+            {
+                min=h.min;
+            }
+
+            if (h.max>max)
+            {
+                max=h.max;
+            }
+
+            for (Integer I : h.returncodes.keySet())
+            {
+                int[] val=returncodes.get(I);
+                if (val==null)
+                {
+                    val=new int[1];
+                    returncodes.put(I,val);
+                }
+                val[0]+=h.returncodes.get(I)[0];
+            }
+        }
+    }
+
+    @Override
+    synchronized void addTo(LogLinearHistogram latencies, Map<Integer,long[]> codes)
+    {
+        //the percentiles of this histogram are the lower ends of its buckets
+        for (int i=0; i<_buckets; i++)
+        {
+            if (histogram[i]!=0)
+            {
+                latencies.record(BUCKET_SIZE*i,histogram[i]);
+            }
+        }
+        if (histogramoverflow!=0)
+        {
+            latencies.record(BUCKET_SIZE*_buckets,histogramoverflow);
+        }
+        addReturnCodes(returncodes,codes);
+    }
+
+    @Override
+    public synchronized void write(DataOutput out) throws IOException
+    {
+        //only the buckets that were hit, as most of them stay empty
+        int used=0;
+        for (int i=0; i<_buckets; i++)
+        {
+            if (histogram[i]!=0)
+            {
+                used++;
+            }
+        }
+        out.writeInt(_buckets);
+        out.writeInt(used);
+        for (int i=0; i<_buckets; i++)
+        {
+            if (histogram[i]!=0)
+            {
+                out.writeInt(i);
+                out.writeInt(histogram[i]);
+            }
+        }
+        out.writeInt(histogramoverflow);
+        out.writeInt(operations);
+        out.writeLong(totallatency);
+        out.writeInt(min);
+        out.writeInt(max);
+        writeReturnCodes(out,returncodes);
+    }
+
+    @Override
+    public synchronized void read(DataInput in) throws IOException
+    {
+        int buckets=in.readInt();
+        if (buckets!=_buckets)
+        {
+            throw new IOException("Can't read a histogram with "+buckets+" buckets into one with "+_buckets);
+        }
+        Arrays.fill(histogram,0);
+        int used=in.readInt();
+        for (int i=0; i<used; i++)
+        {
+            int bucket=in.readInt();
+            if ( (bucket<0) || (bucket>=_buckets) )
+            {
+                throw new IOException("Histogram bucket "+bucket+" out of range");
+            }
+            histogram[bucket]=in.readInt();
+        }
+        histogramoverflow=in.readInt();
+        operations=in.readInt();
+        totallatency=in.readLong();
+        min=in.readInt();
+        max=in.readInt();
+        readReturnCodes(in,returncodes);
+    }
+
+    @Override
+    synchronized void resetWindow()
+    {
+        windowoperations=0;
+        windowtotallatency=0;
+    }
+
 }
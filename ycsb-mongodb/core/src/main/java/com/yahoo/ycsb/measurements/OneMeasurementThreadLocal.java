@@ -0,0 +1,157 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * A measurement that gives every recording thread its own shard, so client threads never contend with each other
+ * while recording latencies. The shards are merged into a fresh measurement whenever a summary or an export is
+ * requested.
+ *
+ * Each shard is only ever written by its owning thread, so its monitor is uncontended except for the brief moment
+ * a reader merges it.
+ */
+public class OneMeasurementThreadLocal extends OneMeasurement
+{
+    private final Supplier<OneMeasurement> _factory;
+
+    private final List<OneMeasurement> _shards=new CopyOnWriteArrayList<OneMeasurement>();
+
+    private final ThreadLocal<OneMeasurement> _shard=new ThreadLocal<OneMeasurement>()
+    {
+        @Override
+        protected OneMeasurement initialValue()
+        {
+            OneMeasurement m=_factory.get();
+            _shards.add(m);
+            return m;
+        }
+    };
+
+    /**
+     * @param name The name of the measurement.
+     * @param factory Creates an empty measurement of the underlying type; called once per recording thread, and
+     *                once per merge.
+     */
+    public OneMeasurementThreadLocal(String name, Supplier<OneMeasurement> factory)
+    {
+        super(name);
+        _factory=factory;
+    }
+
+    @Override
+    public void reportReturnCode(int code)
+    {
+        _shard.get().reportReturnCode(code);
+    }
+
+    @Override
+    public void measure(int latency)
+    {
+        _shard.get().measure(latency);
+    }
+
+    /**
+     * Merge all the shards recorded so far into a new measurement of the underlying type.
+     */
+    OneMeasurement snapshot()
+    {
+        OneMeasurement merged=_factory.get();
+        for (OneMeasurement shard : _shards)
+        {
+            merged.merge(shard);
+        }
+        return merged;
+    }
+
+    @Override
+    public String getSummary()
+    {
+        OneMeasurement merged=_factory.get();
+        for (OneMeasurement shard : _shards)
+        {
+            synchronized(shard)
+            {
+                merged.merge(shard);
+                shard.resetWindow();
+            }
+        }
+        return merged.getSummary();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (OneMeasurement shard : _shards)
+        {
+            if (!shard.isEmpty())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    void addTo(LogLinearHistogram latencies, Map<Integer,long[]> returncodes)
+    {
+        for (OneMeasurement shard : _shards)
+        {
+            shard.addTo(latencies,returncodes);
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+        snapshot().write(out);
+    }
+
+    /**
+     * Keep the measurements of another instance, e.g. read from another process, as a shard of their own that no
+     * thread records into.
+     */
+    @Override
+    public void merge(OneMeasurement other)
+    {
+        OneMeasurement shard=_factory.get();
+        shard.merge((other instanceof OneMeasurementThreadLocal) ? ((OneMeasurementThreadLocal)other).snapshot() : other);
+        _shards.add(shard);
+    }
+
+    @Override
+    public void read(DataInput in) throws IOException
+    {
+        OneMeasurement shard=_factory.get();
+        shard.read(in);
+        _shards.add(shard);
+    }
+
+    @Override
+    public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+    {
+        snapshot().exportMeasurements(exporter);
+    }
+}
@@ -14,34 +14,117 @@
  * permissions and limitations under the License. See accompanying
  * LICENSE file.
  */
-
 package com.yahoo.ycsb.measurements;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.TreeMap;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
+/**
+ * The operations measured in one interval of a time series. Their latencies are kept as the non-empty slots of a
+ * LogLinearHistogram, in increasing order, which takes a few hundred bytes where the whole histogram would take
+ * tens of kilobytes.
+ */
 class SeriesUnit
 {
     /**
-     * @param time
-     * @param sum
-     * @param count
+     * @param time The start of the interval, in microseconds since the epoch.
      */
-    public SeriesUnit(long time, long sum, long count) {
+    public SeriesUnit(long time) {
         this.time = time;
-        this.average = (double)sum/(double)count;
     }
     public long time;
-    public double average;
+    public long sum;
+    public long count;
+    public int max=-1;
+
+    int[] slots=new int[0];
+    long[] counts=new long[0];
+
+    /**
+     * Add the values in the given slots, which must be in increasing order.
+     */
+    void add(int[] addslots, long[] addcounts, int n)
+    {
+        int[] newslots=new int[slots.length+n];
+        long[] newcounts=new long[slots.length+n];
+        int i=0;
+        int j=0;
+        int k=0;
+        while ( (i<slots.length) || (j<n) )
+        {
+            if ( (j>=n) || ( (i<slots.length) && (slots[i]<addslots[j]) ) )
+            {
+                newslots[k]=slots[i];
+                newcounts[k++]=counts[i++];
+            }
+            else if ( (i>=slots.length) || (addslots[j]<slots[i]) )
+            {
+                newslots[k]=addslots[j];
+                newcounts[k++]=addcounts[j++];
+            }
+            else
+            {
+                newslots[k]=slots[i];
+                newcounts[k++]=counts[i++]+addcounts[j++];
+            }
+        }
+        slots=Arrays.copyOf(newslots,k);
+        counts=Arrays.copyOf(newcounts,k);
+    }
+
+    /**
+     * Move the values of a histogram into this interval, and reset the histogram.
+     */
+    void add(LogLinearHistogram histogram)
+    {
+        int[] addslots=new int[64];
+        long[] addcounts=new long[64];
+        int n=0;
+        for (int i=0; i<histogram.counts.length; i++)
+        {
+            if (histogram.counts[i]!=0)
+            {
+                if (n==addslots.length)
+                {
+                    addslots=Arrays.copyOf(addslots,2*n);
+                    addcounts=Arrays.copyOf(addcounts,2*n);
+                }
+                addslots[n]=i;
+                addcounts[n++]=histogram.counts[i];
+            }
+        }
+        add(addslots,addcounts,n);
+        histogram.reset();
+    }
+
+    /**
+     * Add the values of this interval to a histogram with the layout they were recorded with.
+     */
+    void addTo(LogLinearHistogram histogram)
+    {
+        for (int i=0; i<slots.length; i++)
+        {
+            histogram.addAtSlot(slots[i],counts[i]);
+        }
+    }
 }
 
 /**
  * A time series measurement of a metric, such as READ LATENCY.
+ *
+ * Every interval keeps a histogram of its latencies, so the percentiles, the maximum and the throughput of each
+ * interval can be reported, e.g. to see exactly when the tail latency spikes. The intervals are aligned to
+ * multiples of the granularity since the epoch, so the series measured by different clients line up interval by
+ * interval when they are merged.
  */
 public class OneMeasurementTimeSeries extends OneMeasurement
 {
@@ -52,13 +135,32 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 
     public static final String GRANULARITY_DEFAULT="1000";
 
+    /**
+     * The number of significant decimal digits kept for the latencies of each interval, between 1 and 5. Every
+     * extra digit makes the histogram of an interval up to ten times larger.
+     */
+    public static final String SIGNIFICANT_DIGITS="timeseries.significantdigits";
+    public static final String SIGNIFICANT_DIGITS_DEFAULT="2";
+
+    /**
+     * Comma separated list of the percentiles to export, overall and for each interval.
+     */
+    public static final String PERCENTILES="timeseries.percentiles";
+    public static final String PERCENTILES_DEFAULT="50,95,99";
+
     int _granularity;
-    Vector<SeriesUnit> _measurements;
+    TreeMap<Long,SeriesUnit> _measurements;
+    double[] percentiles;
+
+    //the latencies of the current interval, until it is moved into its unit, and those of all the earlier ones
+    LogLinearHistogram histogram;
+    LogLinearHistogram total;
+
+    //the time of construction in microseconds since the epoch, and System.nanoTime() at the same moment
+    long start;
+    long startnanos;
+    SeriesUnit current;
 
-    long start=0;
-    long lastUnit=0;
-    int count=0;
-    int sum=0;
     int operations=0;
     long totallatency=0;
 
@@ -75,42 +177,65 @@ public class OneMeasurementTimeSeries extends OneMeasurement
     {
         super(name);
         _granularity=Integer.parseInt(props.getProperty(GRANULARITY,GRANULARITY_DEFAULT));
-        _measurements=new Vector<SeriesUnit>();
+        _measurements=new TreeMap<Long,SeriesUnit>();
+        percentiles=OneMeasurementHdrHistogram.getPercentiles(props.getProperty(PERCENTILES,PERCENTILES_DEFAULT));
+        int digits=Integer.parseInt(props.getProperty(SIGNIFICANT_DIGITS,SIGNIFICANT_DIGITS_DEFAULT));
+        histogram=new LogLinearHistogram(Integer.MAX_VALUE,digits);
+        total=new LogLinearHistogram(Integer.MAX_VALUE,digits);
         returncodes=new HashMap<Integer,int[]>();
-        start=System.nanoTime()/1000;
-
-        // Set an initial pin
-        _measurements.add(new SeriesUnit(0,0,1));
+        start=System.currentTimeMillis()*1000;
+        startnanos=System.nanoTime();
     }
 
-    void checkEndOfUnit(boolean forceend)
+    SeriesUnit unit(long time)
     {
-        long now=(System.nanoTime()/1000)-start;
-
-        long diff=now-lastUnit;
-        if ( (diff>=_granularity) || (forceend) )
+        SeriesUnit unit=_measurements.get(time);
+        if (unit==null)
         {
-            if(count==0)
-            {
-                return;
-            }
-
-            _measurements.add(new SeriesUnit(now,sum,count));
-
-            lastUnit=now;
+            unit=new SeriesUnit(time);
+            _measurements.put(time,unit);
+        }
+        return unit;
+    }
 
-            count=0;
-            sum=0;
+    /**
+     * Move the latencies of the current interval into its unit.
+     */
+    void flush()
+    {
+        if (histogram.getTotalCount()>0)
+        {
+            total.add(histogram);
+            current.add(histogram);
         }
     }
 
     @Override
-    public void measure(int latency)
+    public synchronized void measure(int latency)
+    {
+        record(start+(System.nanoTime()-startnanos)/1000,latency);
+    }
+
+    /**
+     * Record a latency measured at the given time, in microseconds since the epoch.
+     */
+    synchronized void record(long now, int latency)
     {
-        checkEndOfUnit(false);
+        long time=now-now%_granularity;
+        if ( (current==null) || (current.time!=time) )
+        {
+            flush();
+            current=unit(time);
+        }
+
+        current.count++;
+        current.sum+=latency;
+        if (latency>current.max)
+        {
+            current.max=latency;
+        }
+        histogram.record(latency);
 
-        count++;
-        sum+=latency;
         totallatency+=latency;
         operations++;
         windowoperations++;
@@ -129,16 +254,20 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 
 
     @Override
-    public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+    public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
     {
-        checkEndOfUnit(true);
+        flush();
 
         exporter.write(getName(), "Operations", operations);
         exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
         exporter.write(getName(), "MinLatency(us)", min);
         exporter.write(getName(), "MaxLatency(us)", max);
 
-        //TODO: 95th and 99th percentile latency
+        for (double percentile : percentiles)
+        {
+            exporter.write(getName(), OneMeasurementHdrHistogram.getPercentileName(percentile)+"PercentileLatency(us)",
+                    (int)total.getValueAtPercentile(percentile));
+        }
 
         for (Integer I : returncodes.keySet())
         {
@@ -146,14 +275,25 @@ public class OneMeasurementTimeSeries extends OneMeasurement
             exporter.write(getName(), "Return="+I, val[0]);
         }
 
-        for (SeriesUnit unit : _measurements)
+        //each interval is reported at its end, relative to the start of the measurement
+        for (SeriesUnit unit : _measurements.values())
         {
-            exporter.write(getName(), Double.toString(unit.time/1000.0) + " ms", unit.average);
+            String time=Double.toString((unit.time+_granularity-start)/1000.0)+" ms";
+            exporter.write(getName(), time, ((double)unit.sum)/((double)unit.count));
+            exporter.write(getName(), time+" Throughput(ops/sec)", unit.count*1000000.0/_granularity);
+            unit.addTo(histogram);
+            for (double percentile : percentiles)
+            {
+                exporter.write(getName(), time+" "+OneMeasurementHdrHistogram.getPercentileName(percentile)+"PercentileLatency(us)",
+                        (int)histogram.getValueAtPercentile(percentile));
+            }
+            histogram.reset();
+            exporter.write(getName(), time+" MaxLatency(us)", unit.max);
         }
     }
 
     @Override
-    public void reportReturnCode(int code) {
+    public synchronized void reportReturnCode(int code) {
         Integer Icode=code;
         if (!returncodes.containsKey(Icode))
         {
@@ -166,7 +306,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
     }
 
     @Override
-    public String getSummary() {
+    public synchronized String getSummary() {
         if (windowoperations==0)
         {
             return "";
@@ -179,8 +319,150 @@ public class OneMeasurementTimeSeries extends OneMeasurement
     }
 
     @Override
-    public boolean isEmpty()
+    public synchronized boolean isEmpty()
     {
-      return count==0;
+      return operations==0;
+    }
+
+    @Override
+    public synchronized void merge(OneMeasurement other)
+    {
+        OneMeasurementTimeSeries t=(OneMeasurementTimeSeries)other;
+        if ( (t._granularity!=_granularity) || (t.histogram.significantdigits!=histogram.significantdigits) )
+        {
+            throw new IllegalArgumentException("Can't merge time series with different granularities or significant digits");
+        }
+
+        flush();
+        synchronized(t)
+        {
+            t.flush();
+            start=Math.min(start,t.start);
+            for (SeriesUnit u : t._measurements.values())
+            {
+                SeriesUnit unit=unit(u.time);
+                unit.count+=u.count;
+                unit.sum+=u.sum;
+                unit.max=Math.max(unit.max,u.max);
+                unit.add(u.slots,u.counts,u.slots.length);
+            }
+            total.add(t.total);
+            operations+=t.operations;
+            totallatency+=t.totallatency;
+            windowoperations+=t.windowoperations;
+            windowtotallatency+=t.windowtotallatency;
+
+            if ( (t.min>=0) && ((min<0) || (t.min<min)) )
+            {
+                min=t.min;
+            }
+
+            if (t.max>max)
+            {
+                max=t.max;
+            }
+
+            for (Map.Entry<Integer,int[]> e : t.returncodes.entrySet())
+            {
+                int[] val=returncodes.get(e.getKey());
+                if (val==null)
+                {
+                    val=new int[1];
+                    returncodes.put(e.getKey(),val);
+                }
+                val[0]+=e.getValue()[0];
+            }
+        }
+    }
+
+    @Override
+    synchronized void addTo(LogLinearHistogram latencies, Map<Integer,long[]> codes)
+    {
+        flush();
+        total.addTo(latencies);
+        addReturnCodes(returncodes,codes);
+    }
+
+    @Override
+    public synchronized void write(DataOutput out) throws IOException
+    {
+        flush();
+        out.writeInt(_granularity);
+        out.writeInt(histogram.significantdigits);
+        out.writeLong(start);
+        out.writeInt(_measurements.size());
+        for (SeriesUnit unit : _measurements.values())
+        {
+            out.writeLong(unit.time);
+            out.writeLong(unit.count);
+            out.writeLong(unit.sum);
+            out.writeInt(unit.max);
+            out.writeInt(unit.slots.length);
+            for (int i=0; i<unit.slots.length; i++)
+            {
+                out.writeInt(unit.slots[i]);
+                out.writeLong(unit.counts[i]);
+            }
+        }
+        out.writeInt(operations);
+        out.writeLong(totallatency);
+        out.writeInt(min);
+        out.writeInt(max);
+        writeReturnCodes(out,returncodes);
+    }
+
+    @Override
+    public synchronized void read(DataInput in) throws IOException
+    {
+        int granularity=in.readInt();
+        int digits=in.readInt();
+        if ( (granularity!=_granularity) || (digits!=histogram.significantdigits) )
+        {
+            throw new IOException("Can't read a time series with granularity "+granularity+" and "+digits+
+                    " significant digits into one with "+_granularity+" and "+histogram.significantdigits);
+        }
+        start=in.readLong();
+        _measurements.clear();
+        histogram.reset();
+        current=null;
+        int units=in.readInt();
+        for (int i=0; i<units; i++)
+        {
+            SeriesUnit unit=unit(in.readLong());
+            unit.count=in.readLong();
+            unit.sum=in.readLong();
+            unit.max=in.readInt();
+            int n=in.readInt();
+            int[] slots=new int[n];
+            long[] counts=new long[n];
+            for (int j=0; j<n; j++)
+            {
+                slots[j]=in.readInt();
+                counts[j]=in.readLong();
+                if ( (slots[j]<0) || (slots[j]>=histogram.counts.length) || ( (j>0) && (slots[j]<=slots[j-1]) ) )
+                {
+                    throw new IOException("Invalid histogram slot "+slots[j]);
+                }
+            }
+            unit.slots=slots;
+            unit.counts=counts;
+        }
+        total.reset();
+        for (SeriesUnit unit : _measurements.values())
+        {
+            unit.addTo(total);
+        }
+        operations=in.readInt();
+        totallatency=in.readLong();
+        min=in.readInt();
+        max=in.readInt();
+        readReturnCodes(in,returncodes);
+    }
+
+    @Override
+    synchronized void resetWindow()
+    {
+        windowoperations=0;
+        windowtotallatency=0;
     }
 }
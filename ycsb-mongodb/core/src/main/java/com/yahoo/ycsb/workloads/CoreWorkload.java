@@ -28,15 +28,24 @@ import com.yahoo.ycsb.generator.HotspotIntegerGenerator;
 import com.yahoo.ycsb.generator.HistogramGenerator;
 import com.yahoo.ycsb.generator.IntegerGenerator;
 import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianTableGenerator;
 import com.yahoo.ycsb.generator.SkewedLatestGenerator;
 import com.yahoo.ycsb.generator.UniformIntegerGenerator;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
+import com.yahoo.ycsb.generator.ZetaCache;
 import com.yahoo.ycsb.measurements.Measurements;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
+import java.util.function.Predicate;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The relative
@@ -55,9 +64,17 @@ import java.util.Vector;
  * <LI><b>scanproportion</b>: what proportion of operations should be scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record, modify it, write it back (default: 0)
  * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian, hotspot, or latest (default: uniform)
+ * <LI><b>zipfianconstant</b>: how strongly the zipfian and latest distributions favor popular records, any positive value but 1 (default: 0.99)
+ * <LI><b>zipfiansampler</b>: for the zipfian distribution, whether to compute each key with Gray's closed form ("formula") or look it up in a table of it ("table") (default: formula)
+ * <LI><b>recordtrace</b>: record the operations of each client thread of the transaction phase to this file name followed by "." and the thread id, for TraceWorkload to replay (default: none)
+ * <LI><b>zetacache</b>: a file keeping the zeta constants of zipfian distributions between runs, so they are summed exactly once rather than estimated (default: none)
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed") (default: hashed)
+ * <LI><b>asyncops</b>: should reads, scans, updates and inserts be issued without waiting for them to complete, up to the DB's maxinflight (default: false)
+ * <LI><b>readconsistency</b>: the mix of consistencies reads and scans ask for, e.g. "primary:0.6,secondary:0.3,majority:0.1" (default: the DB's configured consistency)
+ * <LI><b>writeconsistency</b>: the mix of consistencies updates and inserts ask for, e.g. "acknowledged:0.5,majority:0.5" (default: the DB's configured consistency)
+ * <LI><b>pooledvalues</b>: should each client thread refill the same value buffers for every insert and update instead of allocating new ones; ignored with asyncops (default: false)
  * </ul>
  */
 public class CoreWorkload extends Workload
@@ -135,6 +152,11 @@ public class CoreWorkload extends Workload
 
     boolean readallfields;
 
+    /**
+     * The names of the fields, "field0" to "field"+(fieldcount-1), built once rather than for every operation.
+     */
+    String[] fieldnames;
+
     /**
      * The name of the property for deciding whether to write one field (false) or all fields (true) of a record.
      */
@@ -258,13 +280,120 @@ public class CoreWorkload extends Workload
      */
     public static final String HOTSPOT_OPN_FRACTION_DEFAULT = "0.8";
 
+    /**
+     * The name of the property for the zipfian constant of the zipfian and latest request distributions. Larger
+     * values skew the requests more towards the popular (or recent) records. 1 is not allowed, as the generator's
+     * closed form divides by 1-constant; use e.g. 0.999 or 1.001.
+     */
+    public static final String ZIPFIAN_CONSTANT_PROPERTY = "zipfianconstant";
+
+    /**
+     * The default zipfian constant is 0.99.
+     */
+    public static final String ZIPFIAN_CONSTANT_PROPERTY_DEFAULT = String.valueOf(ZipfianGenerator.ZIPFIAN_CONSTANT);
+
+    /**
+     * The name of the property for how the zipfian request distribution draws keys. Options are "formula", which
+     * evaluates Gray's closed form on every draw, and "table", which interpolates in a table of it and scatters
+     * the keys with a cheaper hash. Both follow the same distribution, but make different keys popular.
+     */
+    public static final String ZIPFIAN_SAMPLER_PROPERTY = "zipfiansampler";
+
+    /**
+     * The default is to evaluate the closed form.
+     */
+    public static final String ZIPFIAN_SAMPLER_PROPERTY_DEFAULT = "formula";
+
+    /**
+     * The name of the property for the file that keeps the zeta constants of zipfian distributions over many items
+     * between runs, see ZetaCache.
+     */
+    public static final String ZETA_CACHE_PROPERTY = "zetacache";
+
+    /**
+     * The default is to compute the zeta constants on every run.
+     */
+    public static final String ZETA_CACHE_PROPERTY_DEFAULT = "";
+
+    /**
+     * The name of the property for recording the operations of the transaction phase. Each client thread writes
+     * the operations it issues, in TraceFile's format, to the file with this name followed by "." and its thread
+     * id, for TraceWorkload to replay with replaytrace.
+     */
+    public static final String RECORD_TRACE_PROPERTY = "recordtrace";
+
+    /**
+     * The default is not to record.
+     */
+    public static final String RECORD_TRACE_PROPERTY_DEFAULT = "";
+
+    /**
+     * The name of the property for generating the values of inserts and updates into buffers that each client
+     * thread reuses, instead of allocating an iterator per field per operation. The DB may only use the values
+     * until the operation returns, so this is not used together with asyncops.
+     */
+    public static final String POOLED_VALUES_PROPERTY = "pooledvalues";
+
+    /**
+     * The default is to allocate new values for every operation.
+     */
+    public static final String POOLED_VALUES_PROPERTY_DEFAULT = "false";
+
+    /**
+     * The name of the property for issuing transactions without waiting for them to complete. Only DBs that
+     * extend AsyncDB can have several operations in flight; read-modify-writes always wait, since the write
+     * depends on the read.
+     */
+    public static final String ASYNC_OPS_PROPERTY = "asyncops";
+
+    /**
+     * The default is to wait for every transaction to complete before issuing the next one.
+     */
+    public static final String ASYNC_OPS_PROPERTY_DEFAULT = "false";
+
+    /**
+     * The name of the property for the mix of consistencies that reads and scans ask for, as a comma separated list
+     * of name:proportion pairs. The names are those of ReadConsistency: primary, secondary and majority.
+     */
+    public static final String READ_CONSISTENCY_PROPERTY = "readconsistency";
+
+    /**
+     * The default is for reads to use the consistency the DB was configured with.
+     */
+    public static final String READ_CONSISTENCY_PROPERTY_DEFAULT = "";
+
+    /**
+     * The name of the property for the mix of consistencies that updates, inserts and read-modify-writes ask for,
+     * as a comma separated list of name:proportion pairs. The names are those of WriteConsistency: unacknowledged,
+     * acknowledged, majority and all.
+     */
+    public static final String WRITE_CONSISTENCY_PROPERTY = "writeconsistency";
+
+    /**
+     * The default is for writes to use the consistency the DB was configured with.
+     */
+    public static final String WRITE_CONSISTENCY_PROPERTY_DEFAULT = "";
+
+    /**
+     * The operations a transaction can be, as named in operationchooser.
+     */
+    public enum Operation
+    {
+        READ, UPDATE, INSERT, SCAN, READMODIFYWRITE
+    }
+
     IntegerGenerator keysequence;
 
     DiscreteGenerator operationchooser;
 
+    /**
+     * The operation for each index operationchooser can return, so choosing one needs no string compares.
+     */
+    Operation[] operations;
+
     IntegerGenerator keychooser;
 
-    Generator fieldchooser;
+    IntegerGenerator fieldchooser;
 
     CounterGenerator transactioninsertkeysequence;
 
@@ -272,8 +401,114 @@ public class CoreWorkload extends Workload
 
     boolean orderedinserts;
 
+    boolean asyncops;
+
+    boolean pooledvalues;
+
+    /** The measurements of READMODIFYWRITE, which times a read and an update together. */
+    Measurements.Handle readmodifywrite;
+
+    DiscreteGenerator readconsistencychooser;
+
+    ReadConsistency[] readconsistencies;
+
+    DiscreteGenerator writeconsistencychooser;
+
+    WriteConsistency[] writeconsistencies;
+
     int recordcount;
 
+    final ThreadLocal<KeyBuffer> keybuffer=ThreadLocal.withInitial(() -> new KeyBuffer("user"));
+
+    final ThreadLocal<ValueBuffers> valuebuffers=ThreadLocal.withInitial(() -> new ValueBuffers(fieldnames));
+
+    boolean recording;
+
+    String recordtrace;
+
+    /**
+     * The time operations are recorded relative to.
+     */
+    long recordstart;
+
+    final ThreadLocal<Recorder> recorder=new ThreadLocal<Recorder>();
+
+    final List<Recorder> recorders=Collections.synchronizedList(new ArrayList<Recorder>());
+
+    /**
+     * Writes a client thread's operations to its trace file, which it creates on the first one, so the load
+     * phase leaves earlier recordings alone.
+     */
+    static class Recorder
+    {
+        final String filename;
+        DataOutputStream out;
+        boolean failed;
+
+        Recorder(String filename)
+        {
+            this.filename=filename;
+        }
+
+        void write(Operation op, long keynum, int field, int readfield, int length, long time)
+        {
+            if (failed)
+            {
+                return;
+            }
+            try
+            {
+                if (out==null)
+                {
+                    out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename),1<<16));
+                    out.write(TraceFile.MAGIC);
+                }
+                TraceFile.write(out,op,keynum,field,readfield,length,time);
+            }
+            catch (IOException e)
+            {
+                System.err.println("ERROR: Could not record to "+filename+", not recording any more: "+e);
+                failed=true;
+            }
+        }
+
+        void close()
+        {
+            if (out!=null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("ERROR: Could not finish recording to "+filename+": "+e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The values a client thread refills for each insert and update when pooledvalues is set: a record with an
+     * iterator per field, and a single field update, both kept from one operation to the next.
+     */
+    static class ValueBuffers
+    {
+        final RandomBufferByteIterator[] fields;
+        final HashMap<String,ByteIterator> record=new HashMap<String,ByteIterator>();
+        final HashMap<String,ByteIterator> update=new HashMap<String,ByteIterator>();
+
+        ValueBuffers(String[] fieldnames)
+        {
+            fields=new RandomBufferByteIterator[fieldnames.length];
+            for (int i=0; i<fieldnames.length; i++)
+            {
+                fields[i]=new RandomBufferByteIterator();
+                record.put(fieldnames[i],fields[i]);
+            }
+        }
+    }
+
     protected static IntegerGenerator getFieldLengthGenerator(Properties p) throws WorkloadException{
         IntegerGenerator fieldlengthgenerator;
         String fieldlengthdistribution = p.getProperty(FIELD_LENGTH_DISTRIBUTION_PROPERTY, FIELD_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
@@ -297,6 +532,41 @@ public class CoreWorkload extends Workload
         return fieldlengthgenerator;
     }
 
+    /**
+     * Parse a mix of consistencies, e.g. "primary:0.6,secondary:0.4", into a generator of their names.
+     *
+     * @param property The name of the property the mix was given in, for error messages.
+     * @param mix The mix.
+     * @param valid Tells whether a name is a valid consistency.
+     * @return The generator, or null if the mix is empty.
+     */
+    protected static DiscreteGenerator parseConsistencyMix(String property, String mix, Predicate<String> valid) throws WorkloadException
+    {
+        if (mix.trim().length()==0)
+        {
+            return null;
+        }
+
+        DiscreteGenerator chooser=new DiscreteGenerator();
+        for (String entry : mix.split(","))
+        {
+            String[] pair=entry.trim().split(":");
+            if ( (pair.length!=2) || !valid.test(pair[0].trim()) )
+            {
+                throw new WorkloadException("Invalid "+property+" entry \""+entry+"\", expected name:proportion");
+            }
+            try
+            {
+                chooser.addValue(Double.parseDouble(pair[1].trim()),pair[0].trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new WorkloadException("Invalid proportion in "+property+" entry \""+entry+"\"", e);
+            }
+        }
+        return chooser;
+    }
+
     /**
      * Initialize the scenario.
      * Called once, in the main client thread, before any operations are started.
@@ -304,8 +574,14 @@ public class CoreWorkload extends Workload
     public void init(Properties p) throws WorkloadException
     {
         table = p.getProperty(TABLENAME_PROPERTY,TABLENAME_PROPERTY_DEFAULT);
+        ZetaCache.setFile(p.getProperty(ZETA_CACHE_PROPERTY,ZETA_CACHE_PROPERTY_DEFAULT));
 
         fieldcount=Integer.parseInt(p.getProperty(FIELD_COUNT_PROPERTY,FIELD_COUNT_PROPERTY_DEFAULT));
+        fieldnames=new String[fieldcount];
+        for (int i=0; i<fieldcount; i++)
+        {
+            fieldnames[i]="field"+i;
+        }
         fieldlengthgenerator = CoreWorkload.getFieldLengthGenerator(p);
 
         double readproportion=Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
@@ -313,8 +589,14 @@ public class CoreWorkload extends Workload
         double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
         double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
         double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
+        readmodifywrite=Measurements.getMeasurements().getHandle(Operation.READMODIFYWRITE.name());
         recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
         String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
+        double zipfianconstant=Double.parseDouble(p.getProperty(ZIPFIAN_CONSTANT_PROPERTY,ZIPFIAN_CONSTANT_PROPERTY_DEFAULT));
+        if ( !(zipfianconstant>0) || (zipfianconstant==1) )
+        {
+            throw new WorkloadException("Invalid "+ZIPFIAN_CONSTANT_PROPERTY+" "+zipfianconstant+", expected a positive value other than 1");
+        }
         int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
         String scanlengthdistrib=p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY,SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 
@@ -322,6 +604,37 @@ public class CoreWorkload extends Workload
 
         readallfields=Boolean.parseBoolean(p.getProperty(READ_ALL_FIELDS_PROPERTY,READ_ALL_FIELDS_PROPERTY_DEFAULT));
         writeallfields=Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY,WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
+        asyncops=Boolean.parseBoolean(p.getProperty(ASYNC_OPS_PROPERTY,ASYNC_OPS_PROPERTY_DEFAULT));
+        pooledvalues=Boolean.parseBoolean(p.getProperty(POOLED_VALUES_PROPERTY,POOLED_VALUES_PROPERTY_DEFAULT)) && !asyncops;
+        recordtrace=p.getProperty(RECORD_TRACE_PROPERTY,RECORD_TRACE_PROPERTY_DEFAULT);
+        recording=recordtrace.length()>0;
+        if ( recording && (fieldcount>TraceFile.MAX_READ_FIELD+1) )
+        {
+            throw new WorkloadException("Can't record a trace of more than "+(TraceFile.MAX_READ_FIELD+1)+" fields");
+        }
+        recordstart=System.nanoTime();
+        readconsistencychooser=parseConsistencyMix(READ_CONSISTENCY_PROPERTY,
+                p.getProperty(READ_CONSISTENCY_PROPERTY,READ_CONSISTENCY_PROPERTY_DEFAULT),
+                name -> ReadConsistency.fromName(name)!=null);
+        writeconsistencychooser=parseConsistencyMix(WRITE_CONSISTENCY_PROPERTY,
+                p.getProperty(WRITE_CONSISTENCY_PROPERTY,WRITE_CONSISTENCY_PROPERTY_DEFAULT),
+                name -> WriteConsistency.fromName(name)!=null);
+        if (readconsistencychooser!=null)
+        {
+            readconsistencies=new ReadConsistency[readconsistencychooser.size()];
+            for (int i=0; i<readconsistencies.length; i++)
+            {
+                readconsistencies[i]=ReadConsistency.fromName(readconsistencychooser.getValue(i));
+            }
+        }
+        if (writeconsistencychooser!=null)
+        {
+            writeconsistencies=new WriteConsistency[writeconsistencychooser.size()];
+            for (int i=0; i<writeconsistencies.length; i++)
+            {
+                writeconsistencies[i]=WriteConsistency.fromName(writeconsistencychooser.getValue(i));
+            }
+        }
 
         if (p.getProperty(INSERT_ORDER_PROPERTY,INSERT_ORDER_PROPERTY_DEFAULT).compareTo("hashed")==0)
         {
@@ -344,39 +657,45 @@ public class CoreWorkload extends Workload
         operationchooser=new DiscreteGenerator();
         if (readproportion>0)
         {
-            String op="READ";
+            String op=Operation.READ.name();
             System.out.println("[WORKLOAD], " + op + ", " + readproportion + "%.");
             operationchooser.addValue(readproportion,op);
         }
 
         if (updateproportion>0)
         {
-            String op="UPDATE";
+            String op=Operation.UPDATE.name();
             System.out.println("[WORKLOAD], " + op + ", " + updateproportion + "%.");
             operationchooser.addValue(updateproportion,op);
         }
 
         if (insertproportion>0)
         {
-            String op="INSERT";
+            String op=Operation.INSERT.name();
             System.out.println("[WORKLOAD], " + op + ", " + insertproportion + "%.");
             operationchooser.addValue(insertproportion,op);
         }
 
         if (scanproportion>0)
         {
-            String op="SCAN";
+            String op=Operation.SCAN.name();
             System.out.println("[WORKLOAD], " + op + ", " + scanproportion + "%.");
             operationchooser.addValue(scanproportion,op);
         }
 
         if (readmodifywriteproportion>0)
         {
-            String op="READMODIFYWRITE";
+            String op=Operation.READMODIFYWRITE.name();
             System.out.println("[WORKLOAD], " + op + ", " + readmodifywriteproportion + "%.");
             operationchooser.addValue(readmodifywriteproportion,op);
         }
 
+        operations=new Operation[operationchooser.size()];
+        for (int i=0; i<operations.length; i++)
+        {
+            operations[i]=Operation.valueOf(operationchooser.getValue(i));
+        }
+
         transactioninsertkeysequence=new CounterGenerator(recordcount);
         if (requestdistrib.compareTo("uniform")==0)
         {
@@ -394,11 +713,23 @@ public class CoreWorkload extends Workload
             int opcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
             int expectednewkeys=(int)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
 
-            keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys);
+            String sampler=p.getProperty(ZIPFIAN_SAMPLER_PROPERTY,ZIPFIAN_SAMPLER_PROPERTY_DEFAULT);
+            if (sampler.compareTo("table")==0)
+            {
+                keychooser=new ScrambledZipfianTableGenerator(recordcount+expectednewkeys,zipfianconstant);
+            }
+            else if (sampler.compareTo("formula")==0)
+            {
+                keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys,zipfianconstant);
+            }
+            else
+            {
+                throw new WorkloadException("Unknown "+ZIPFIAN_SAMPLER_PROPERTY+" \""+sampler+"\"");
+            }
         }
         else if (requestdistrib.compareTo("latest")==0)
         {
-            keychooser=new SkewedLatestGenerator(transactioninsertkeysequence);
+            keychooser=new SkewedLatestGenerator(transactioninsertkeysequence,zipfianconstant);
         }
         else if (requestdistrib.equals("hotspot"))
         {
@@ -431,32 +762,136 @@ public class CoreWorkload extends Workload
     }
 
     public String buildKeyName(long keynum) {
+        return buildKey(keynum).toString();
+    }
+
+    /**
+     * Build the key of a record in this thread's KeyBuffer, without allocating. The key is overwritten by the
+     * next call on the same thread, so it must be copied to outlive the operation it is built for.
+     */
+    public CharSequence buildKey(long keynum) {
+        return keybuffer.get().set(keyNumber(keynum));
+    }
+
+    /**
+     * @return the number in the key of record keynum.
+     */
+    long keyNumber(long keynum) {
          if (!orderedinserts)
          {
              keynum=Utils.hash(keynum);
          }
-        return "user"+keynum;
+        return keynum;
     }
     HashMap<String, ByteIterator> buildValues() {
+        return buildValues(0);
+    }
+
+    /**
+     * @param length The length of every field, or 0 to draw each from the field length distribution.
+     */
+    HashMap<String, ByteIterator> buildValues(int length) {
+         if (pooledvalues)
+         {
+             ValueBuffers buffers=valuebuffers.get();
+             for (RandomBufferByteIterator field : buffers.fields)
+             {
+                 field.reset(fieldLength(length));
+             }
+             return buffers.record;
+         }
+
          HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
 
          for (int i=0; i<fieldcount; i++)
          {
-             String fieldkey="field"+i;
-             ByteIterator data= new RandomByteIterator(fieldlengthgenerator.nextInt());
+             String fieldkey=fieldnames[i];
+             ByteIterator data= new RandomByteIterator(fieldLength(length));
              values.put(fieldkey,data);
          }
         return values;
     }
-    HashMap<String, ByteIterator> buildUpdate() {
-        //update a random field
+    /**
+     * @param field The index of the field to update.
+     * @param length The length of the new value, or 0 to draw it from the field length distribution.
+     */
+    HashMap<String, ByteIterator> buildUpdate(int field, int length) {
+        if (pooledvalues)
+        {
+            ValueBuffers buffers=valuebuffers.get();
+            buffers.update.clear();
+            buffers.update.put(fieldnames[field],buffers.fields[field].reset(fieldLength(length)));
+            return buffers.update;
+        }
+
         HashMap<String, ByteIterator> values=new HashMap<String,ByteIterator>();
-        String fieldname="field"+fieldchooser.nextString();
-        ByteIterator data = new RandomByteIterator(fieldlengthgenerator.nextInt());
+        String fieldname=fieldnames[field];
+        ByteIterator data = new RandomByteIterator(fieldLength(length));
         values.put(fieldname,data);
         return values;
     }
 
+    int fieldLength(int length) {
+        return (length>0) ? length : fieldlengthgenerator.nextInt();
+    }
+
+    public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+    {
+        if (recording)
+        {
+            Recorder r=new Recorder(recordtrace+"."+mythreadid);
+            recorder.set(r);
+            recorders.add(r);
+        }
+        return null;
+    }
+
+    public void cleanup() throws WorkloadException
+    {
+        synchronized (recorders)
+        {
+            for (Recorder r : recorders)
+            {
+                r.close();
+            }
+            recorders.clear();
+        }
+    }
+
+    /**
+     * Record an operation of this thread, if recordtrace is set.
+     *
+     * @param keynum The record, as passed to buildKey.
+     * @param field The index of the field read or written, or -1 for all fields.
+     * @param length The length of the values written, or the number of records scanned.
+     */
+    void record(Operation op, long keynum, int field, int length)
+    {
+        record(op,keynum,field,TraceFile.READ_WRITTEN_FIELD,length);
+    }
+
+    void record(Operation op, long keynum, int field, int readfield, int length)
+    {
+        Recorder r=recorder.get();
+        if (r!=null)
+        {
+            r.write(op,keyNumber(keynum),field,readfield,length,Measurements.getMeasurements().getIntendedStartTimeNs()-recordstart);
+        }
+    }
+
+    /**
+     * @return the mean length of the values, which a replay gives to each of them, so a record has the same size.
+     */
+    static int valueLength(HashMap<String,ByteIterator> values)
+    {
+        long total=0;
+        for (ByteIterator value : values.values())
+        {
+            total+=value.bytesLeft();
+        }
+        return (int)(total/values.size());
+    }
+
     /**
      * Do one insert operation. Because it will be called concurrently from multiple client threads, this
      * function must be thread safe. However, avoid synchronized, or the threads will block waiting for each
@@ -466,9 +901,9 @@ public class CoreWorkload extends Workload
     public boolean doInsert(DB db, Object threadstate)
     {
         int keynum=keysequence.nextInt();
-        String dbkey = buildKeyName(keynum);
+        CharSequence dbkey = buildKey(keynum);
         HashMap<String, ByteIterator> values = buildValues();
-        if (db.insert(table,dbkey,values) == 0)
+        if (db.insert(table,dbkey,values,nextWriteConsistency()) == 0)
             return true;
         else
             return false;
@@ -482,32 +917,44 @@ public class CoreWorkload extends Workload
      */
     public boolean doTransaction(DB db, Object threadstate)
     {
-        String op=operationchooser.nextString();
-
-        if (op.compareTo("READ")==0)
+        switch (operations[operationchooser.nextIndex()])
         {
+        case READ:
             doTransactionRead(db);
-        }
-        else if (op.compareTo("UPDATE")==0)
-        {
+            break;
+        case UPDATE:
             doTransactionUpdate(db);
-        }
-        else if (op.compareTo("INSERT")==0)
-        {
+            break;
+        case INSERT:
             doTransactionInsert(db);
-        }
-        else if (op.compareTo("SCAN")==0)
-        {
+            break;
+        case SCAN:
             doTransactionScan(db);
-        }
-        else
-        {
+            break;
+        default:
             doTransactionReadModifyWrite(db);
+            break;
         }
 
         return true;
     }
 
+    /**
+     * @return the consistency for the next read, or null to use the DB's configured one.
+     */
+    ReadConsistency nextReadConsistency()
+    {
+        return (readconsistencychooser==null) ? null : readconsistencies[readconsistencychooser.nextIndex()];
+    }
+
+    /**
+     * @return the consistency for the next write, or null to use the DB's configured one.
+     */
+    WriteConsistency nextWriteConsistency()
+    {
+        return (writeconsistencychooser==null) ? null : writeconsistencies[writeconsistencychooser.nextIndex()];
+    }
+
     int nextKeynum() {
         int keynum;
         if(keychooser instanceof ExponentialGenerator) {
@@ -531,20 +978,42 @@ public class CoreWorkload extends Workload
         //choose a random key
         int keynum = nextKeynum();
 
-        String keyname = buildKeyName(keynum);
+        CharSequence keyname = buildKey(keynum);
 
         HashSet<String> fields=null;
+        int field=-1;
 
         if (!readallfields)
         {
             //read a random field
-            String fieldname="field"+fieldchooser.nextString();
+            field=fieldchooser.nextInt();
+            String fieldname=fieldnames[field];
 
             fields=new HashSet<String>();
             fields.add(fieldname);
         }
 
-        db.read(table,keyname,fields,new HashMap<String,ByteIterator>());
+        if (recording)
+        {
+            record(Operation.READ,keynum,field,0);
+        }
+        read(db,keyname,fields);
+    }
+
+    /**
+     * Read the given fields of a record, or all of them if fields is null.
+     */
+    void read(DB db, CharSequence keyname, HashSet<String> fields)
+    {
+        ReadConsistency consistency=nextReadConsistency();
+        if (asyncops && (db instanceof AsyncDB))
+        {
+            ((AsyncDB)db).readAsync(table,keyname.toString(),fields,new HashMap<String,ByteIterator>(),consistency);
+        }
+        else
+        {
+            db.read(table,keyname,fields,new HashMap<String,ByteIterator>(),consistency);
+        }
     }
 
     public void doTransactionReadModifyWrite(DB db)
@@ -552,20 +1021,23 @@ public class CoreWorkload extends Workload
         //choose a random key
         int keynum = nextKeynum();
 
-        String keyname = buildKeyName(keynum);
+        CharSequence keyname = buildKey(keynum);
 
         HashSet<String> fields=null;
+        int readfield=-1;
 
         if (!readallfields)
         {
             //read a random field
-            String fieldname="field"+fieldchooser.nextString();
+            readfield=fieldchooser.nextInt();
+            String fieldname=fieldnames[readfield];
 
             fields=new HashSet<String>();
             fields.add(fieldname);
         }
 
         HashMap<String,ByteIterator> values;
+        int field=-1;
 
         if (writeallfields)
         {
@@ -575,20 +1047,37 @@ public class CoreWorkload extends Workload
         else
         {
            //update a random field
-           values = buildUpdate();
+           field = fieldchooser.nextInt();
+           values = buildUpdate(field,0);
+        }
+
+        if (recording)
+        {
+            record(Operation.READMODIFYWRITE,keynum,field,readfield,valueLength(values));
         }
+        readModifyWrite(db,keyname,fields,values);
+    }
 
+    /**
+     * Read the given fields of a record, or all of them if fields is null, and write the values back to it,
+     * measured together as one READMODIFYWRITE.
+     */
+    void readModifyWrite(DB db, CharSequence keyname, HashSet<String> fields, HashMap<String,ByteIterator> values)
+    {
         //do the transaction
 
+        Measurements measurements=Measurements.getMeasurements();
+        long ist=measurements.getIntendedStartTimeNs();
         long st=System.nanoTime();
 
-        db.read(table,keyname,fields,new HashMap<String,ByteIterator>());
+        db.read(table,keyname,fields,new HashMap<String,ByteIterator>(),nextReadConsistency());
 
-        db.update(table,keyname,values);
+        db.update(table,keyname,values,nextWriteConsistency());
 
         long en=System.nanoTime();
 
-        Measurements.getMeasurements().measure("READMODIFYWRITE", (int)((en-st)/1000));
+        readmodifywrite.measure((int)((en-st)/1000));
+        readmodifywrite.measureIntended((int)((en-ist)/1000));
     }
 
     public void doTransactionScan(DB db)
@@ -596,23 +1085,45 @@ public class CoreWorkload extends Workload
         //choose a random key
         int keynum = nextKeynum();
 
-        String startkeyname = buildKeyName(keynum);
+        CharSequence startkeyname = buildKey(keynum);
 
         //choose a random scan length
         int len=scanlength.nextInt();
 
         HashSet<String> fields=null;
+        int field=-1;
 
         if (!readallfields)
         {
             //read a random field
-            String fieldname="field"+fieldchooser.nextString();
+            field=fieldchooser.nextInt();
+            String fieldname=fieldnames[field];
 
             fields=new HashSet<String>();
             fields.add(fieldname);
         }
 
-        db.scan(table,startkeyname,len,fields,new Vector<HashMap<String,ByteIterator>>());
+        if (recording)
+        {
+            record(Operation.SCAN,keynum,field,len);
+        }
+        scan(db,startkeyname,len,fields);
+    }
+
+    /**
+     * Scan len records from startkeyname, reading the given fields, or all of them if fields is null.
+     */
+    void scan(DB db, CharSequence startkeyname, int len, HashSet<String> fields)
+    {
+        ReadConsistency consistency=nextReadConsistency();
+        if (asyncops && (db instanceof AsyncDB))
+        {
+            ((AsyncDB)db).scanAsync(table,startkeyname.toString(),len,fields,new Vector<HashMap<String,ByteIterator>>(),consistency);
+        }
+        else
+        {
+            db.scan(table,startkeyname,len,fields,new Vector<HashMap<String,ByteIterator>>(),consistency);
+        }
     }
 
     public void doTransactionUpdate(DB db)
@@ -620,9 +1131,10 @@ public class CoreWorkload extends Workload
         //choose a random key
         int keynum = nextKeynum();
 
-        String keyname=buildKeyName(keynum);
+        CharSequence keyname=buildKey(keynum);
 
         HashMap<String,ByteIterator> values;
+        int field=-1;
 
         if (writeallfields)
         {
@@ -632,10 +1144,28 @@ public class CoreWorkload extends Workload
         else
         {
            //update a random field
-           values = buildUpdate();
+           field = fieldchooser.nextInt();
+           values = buildUpdate(field,0);
         }
 
-        db.update(table,keyname,values);
+        if (recording)
+        {
+            record(Operation.UPDATE,keynum,field,valueLength(values));
+        }
+        update(db,keyname,values);
+    }
+
+    void update(DB db, CharSequence keyname, HashMap<String,ByteIterator> values)
+    {
+        WriteConsistency consistency=nextWriteConsistency();
+        if (asyncops && (db instanceof AsyncDB))
+        {
+            ((AsyncDB)db).updateAsync(table,keyname.toString(),values,consistency);
+        }
+        else
+        {
+            db.update(table,keyname,values,consistency);
+        }
     }
 
     public void doTransactionInsert(DB db)
@@ -643,9 +1173,26 @@ public class CoreWorkload extends Workload
         //choose the next key
         int keynum=transactioninsertkeysequence.nextInt();
 
-        String dbkey = buildKeyName(keynum);
+        CharSequence dbkey = buildKey(keynum);
 
         HashMap<String, ByteIterator> values = buildValues();
-        db.insert(table,dbkey,values);
+        if (recording)
+        {
+            record(Operation.INSERT,keynum,-1,valueLength(values));
+        }
+        insert(db,dbkey,values);
+    }
+
+    void insert(DB db, CharSequence dbkey, HashMap<String,ByteIterator> values)
+    {
+        WriteConsistency consistency=nextWriteConsistency();
+        if (asyncops && (db instanceof AsyncDB))
+        {
+            ((AsyncDB)db).insertAsync(table,dbkey.toString(),values,consistency);
+        }
+        else
+        {
+            db.insert(table,dbkey,values,consistency);
+        }
     }
 }
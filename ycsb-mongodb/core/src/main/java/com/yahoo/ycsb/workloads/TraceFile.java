@@ -0,0 +1,268 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.yahoo.ycsb.workloads.CoreWorkload.Operation;
+
+/**
+ * A binary trace of operations for TraceWorkload to replay, mapped into memory.
+ *
+ * The file starts with the 8 bytes of MAGIC, followed by one RECORD_SIZE record per operation, little endian:
+ * <ul>
+ * <li>the key number, a long, as in the key "user"+number
+ * <li>a long, when the operation was meant to start, in nanoseconds from the start of the run
+ * <li>an int, the length of the values written, or the number of records scanned; 0 leaves it to the workload
+ * <li>a short, the index of the field read or written, or -1 for all fields
+ * <li>a byte, the ordinal of the CoreWorkload.Operation
+ * <li>a byte, for a READMODIFYWRITE the index of the field read plus 2, 1 for all fields, or 0 to read the field
+ * written; 0 for the other operations
+ * </ul>
+ *
+ * The records are read with absolute gets, which do not move the buffers' positions, so any number of threads can
+ * read one TraceFile without locking. Files too large for one mapping are mapped in segments.
+ *
+ * main() converts a text trace, one operation per line, to this format; see convert().
+ */
+public class TraceFile
+{
+    public static final byte[] MAGIC={'Y','C','S','B','T','R','C','1'};
+    public static final int RECORD_SIZE=24;
+
+    /**
+     * Records per mapped segment, 1.5 GB of them.
+     */
+    static final long SEGMENT_RECORDS=1L<<26;
+
+    static final Operation[] OPERATIONS=Operation.values();
+
+    /**
+     * The read field of a READMODIFYWRITE that reads the field it writes, as text traces do.
+     */
+    public static final int READ_WRITTEN_FIELD=-2;
+
+    /**
+     * The largest index of a field a READMODIFYWRITE can be recorded to read.
+     */
+    public static final int MAX_READ_FIELD=253;
+
+    final MappedByteBuffer[] segments;
+    final long records;
+
+    public TraceFile(String filename) throws IOException
+    {
+        try (RandomAccessFile file=new RandomAccessFile(filename,"r"))
+        {
+            FileChannel channel=file.getChannel();
+            long size=channel.size();
+            byte[] magic=new byte[MAGIC.length];
+            if ( (size<MAGIC.length) || (file.read(magic)!=MAGIC.length) || !Arrays.equals(magic,MAGIC) )
+            {
+                throw new IOException(filename+" is not a trace file");
+            }
+            if ((size-MAGIC.length)%RECORD_SIZE!=0)
+            {
+                throw new IOException(filename+" ends in the middle of a record");
+            }
+
+            records=(size-MAGIC.length)/RECORD_SIZE;
+            segments=new MappedByteBuffer[(int)((records+SEGMENT_RECORDS-1)/SEGMENT_RECORDS)];
+            for (int i=0; i<segments.length; i++)
+            {
+                long first=i*SEGMENT_RECORDS;
+                long count=Math.min(SEGMENT_RECORDS,records-first);
+                segments[i]=channel.map(FileChannel.MapMode.READ_ONLY,MAGIC.length+first*RECORD_SIZE,count*RECORD_SIZE);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * @return the number of operations in the trace.
+     */
+    public long size()
+    {
+        return records;
+    }
+
+    ByteBuffer segment(long record)
+    {
+        return segments[(int)(record/SEGMENT_RECORDS)];
+    }
+
+    static int offset(long record)
+    {
+        return (int)(record%SEGMENT_RECORDS)*RECORD_SIZE;
+    }
+
+    public long keynum(long record)
+    {
+        return segment(record).getLong(offset(record));
+    }
+
+    public long time(long record)
+    {
+        return segment(record).getLong(offset(record)+8);
+    }
+
+    public int length(long record)
+    {
+        return segment(record).getInt(offset(record)+16);
+    }
+
+    public int field(long record)
+    {
+        return segment(record).getShort(offset(record)+20);
+    }
+
+    public Operation operation(long record)
+    {
+        return OPERATIONS[segment(record).get(offset(record)+22)];
+    }
+
+    /**
+     * @return the index of the field a READMODIFYWRITE reads, or -1 for all fields.
+     */
+    public int readField(long record)
+    {
+        int read=(segment(record).get(offset(record)+23)&0xff)+READ_WRITTEN_FIELD;
+        return (read==READ_WRITTEN_FIELD) ? field(record) : read;
+    }
+
+    /**
+     * Append one operation to a trace being written, after MAGIC.
+     *
+     * @param readfield The field a READMODIFYWRITE reads, -1 for all fields, or READ_WRITTEN_FIELD for the field
+     *                  it writes, which is what the other operations give.
+     */
+    public static void write(DataOutputStream out, Operation op, long keynum, int field, int readfield, int length, long time) throws IOException
+    {
+        if ( (readfield<READ_WRITTEN_FIELD) || (readfield>MAX_READ_FIELD) )
+        {
+            throw new IllegalArgumentException("Can't record reading field "+readfield);
+        }
+        out.writeLong(Long.reverseBytes(keynum));
+        out.writeLong(Long.reverseBytes(time));
+        out.writeInt(Integer.reverseBytes(length));
+        out.writeShort(Short.reverseBytes((short)field));
+        out.writeByte(op.ordinal());
+        out.writeByte(readfield-READ_WRITTEN_FIELD);
+    }
+
+    /**
+     * Convert a text trace to a binary one. Each line is either a key alone, which is read in full as
+     * FileGenerator's key lists were, or
+     * <pre>
+     * OPERATION key [field [length]]
+     * </pre>
+     * separated by whitespace, where OPERATION is the name of a CoreWorkload.Operation, the key is a prefix
+     * followed by its number (e.g. user1234), the field is its name (e.g. field3) or number, or * for all fields,
+     * and the length is of the values written or the number of records scanned. Empty lines and lines starting
+     * with # are skipped. Text traces have no times, so they are all written as 0.
+     *
+     * @return the number of operations written
+     */
+    public static long convert(BufferedReader in, OutputStream os) throws IOException
+    {
+        DataOutputStream out=new DataOutputStream(os);
+        out.write(MAGIC);
+        long count=0;
+        int lineno=0;
+        String line;
+        while ((line=in.readLine())!=null)
+        {
+            lineno++;
+            line=line.trim();
+            if ( (line.length()==0) || line.startsWith("#") )
+            {
+                continue;
+            }
+            String[] parts=line.split("\\s+");
+            try
+            {
+                if (parts.length==1)
+                {
+                    write(out,Operation.READ,number(parts[0]),-1,READ_WRITTEN_FIELD,0,0);
+                }
+                else
+                {
+                    Operation op=Operation.valueOf(parts[0].toUpperCase());
+                    int field=( (parts.length<3) || parts[2].equals("*") ) ? -1 : (int)number(parts[2]);
+                    int length=(parts.length<4) ? 0 : Integer.parseInt(parts[3]);
+                    write(out,op,number(parts[1]),field,READ_WRITTEN_FIELD,length,0);
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException("Invalid trace line "+lineno+": \""+line+"\"",e);
+            }
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * @return the number at the end of a name like user1234 or field3.
+     */
+    static long number(String name)
+    {
+        int start=name.length();
+        while ( (start>0) && Character.isDigit(name.charAt(start-1)) )
+        {
+            start--;
+        }
+        if ( (start>0) && (name.charAt(start-1)=='-') )
+        {
+            start--;
+        }
+        return Long.parseLong(name.substring(start));
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length!=2)
+        {
+            System.out.println("Usage: java com.yahoo.ycsb.workloads.TraceFile <text trace> <binary trace>");
+            System.exit(0);
+        }
+
+        try (BufferedReader in=new BufferedReader(new FileReader(args[0]));
+             OutputStream out=new BufferedOutputStream(new FileOutputStream(args[1])))
+        {
+            long count=convert(in,out);
+            System.out.println("Wrote "+count+" operations to "+args[1]);
+        }
+        catch (IOException e)
+        {
+            System.err.println("ERROR: "+e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Replays the operations of binary traces (see TraceFile) instead of drawing them from distributions. A thread
+ * stops when it reaches the end of its operations.
+ *
+ * With tracefile, the client threads share one trace: each replays every threadcount-th operation, starting from
+ * its thread id, so the threads go through the trace side by side, roughly in its order, and share nothing but
+ * the read-only mapping of the file. With replaytrace, each thread replays the operations one thread of an
+ * earlier run recorded with recordtrace, in the same order, so the run should have as many threads.
+ *
+ * Keys are "user" followed by the key number as it is in the trace. Values of the length the trace gives, or with
+ * lengths from the field length distribution where it gives 0, are built as CoreWorkload builds them. A scan whose
+ * length the trace gives as 0 draws it from the scan length distribution. Which fields are read and written is up
+ * to the trace, but other CoreWorkload properties, e.g. readconsistency or pooledvalues, apply as well. The load
+ * phase is CoreWorkload's.
+ *
+ * Properties to control the trace:
+ * <UL>
+ * <LI><b>tracefile</b>: a binary trace for all threads to replay; make one from a text trace with TraceFile's main()
+ * <LI><b>replaytrace</b>: the recordtrace of an earlier run, for each thread to replay its own operations
+ * <LI><b>tracespeed</b>: replay the operations at the times the trace gives, sped up by this factor, e.g. 2 for
+ * twice as fast; their latencies are also measured from those times. 0 replays them as fast as possible, as does
+ * a trace without times (default: 0)
+ * </UL>
+ */
+public class TraceWorkload extends CoreWorkload
+{
+    /**
+     * The name of the property for the binary trace file to replay.
+     */
+    public static final String TRACE_FILE_PROPERTY = "tracefile";
+
+    /**
+     * The name of the property for the recorded traces to replay, one per thread, as named by recordtrace.
+     */
+    public static final String REPLAY_TRACE_PROPERTY = "replaytrace";
+
+    /**
+     * The name of the property for how much faster than recorded to replay the operations, or 0 for as fast as
+     * possible.
+     */
+    public static final String TRACE_SPEED_PROPERTY = "tracespeed";
+
+    /**
+     * The default is to replay as fast as possible.
+     */
+    public static final String TRACE_SPEED_PROPERTY_DEFAULT = "0";
+
+    TraceFile trace;
+
+    String replaytrace;
+
+    double tracespeed;
+
+    /**
+     * When the first operation was replayed, which the trace's times are relative to, or 0 before that.
+     */
+    final AtomicLong replaystart=new AtomicLong();
+
+    /**
+     * Where a client thread is in its trace.
+     */
+    static class Cursor
+    {
+        final TraceFile trace;
+        long next;
+        final long stride;
+
+        Cursor(TraceFile trace, long first, long stride)
+        {
+            this.trace=trace;
+            next=first;
+            this.stride=stride;
+        }
+    }
+
+    public void init(Properties p) throws WorkloadException
+    {
+        super.init(p);
+
+        String tracefile=p.getProperty(TRACE_FILE_PROPERTY);
+        replaytrace=p.getProperty(REPLAY_TRACE_PROPERTY);
+        tracespeed=Double.parseDouble(p.getProperty(TRACE_SPEED_PROPERTY,TRACE_SPEED_PROPERTY_DEFAULT));
+        if ( (tracefile==null)==(replaytrace==null) )
+        {
+            throw new WorkloadException("Set one of "+TRACE_FILE_PROPERTY+" and "+REPLAY_TRACE_PROPERTY);
+        }
+        if (tracefile!=null)
+        {
+            trace=open(tracefile);
+            System.out.println("[WORKLOAD], TRACE, " + trace.size() + " operations.");
+        }
+    }
+
+    static TraceFile open(String filename) throws WorkloadException
+    {
+        try
+        {
+            return new TraceFile(filename);
+        }
+        catch (IOException e)
+        {
+            throw new WorkloadException("Couldn't read trace file: "+filename, e);
+        }
+    }
+
+    public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+    {
+        super.initThread(p,mythreadid,threadcount);
+        if (replaytrace!=null)
+        {
+            return new Cursor(open(replaytrace+"."+mythreadid),0,1);
+        }
+        return new Cursor(trace,mythreadid,threadcount);
+    }
+
+    /**
+     * Replay this thread's next operation of the trace.
+     *
+     * @return false once the thread has replayed all of its operations
+     */
+    public boolean doTransaction(DB db, Object threadstate)
+    {
+        Cursor cursor=(Cursor)threadstate;
+        TraceFile trace=cursor.trace;
+        long record=cursor.next;
+        if (record>=trace.size())
+        {
+            return false;
+        }
+        cursor.next+=cursor.stride;
+
+        int field=trace.field(record);
+        int readfield=trace.readField(record);
+        if (Math.max(field,readfield)>=fieldcount)
+        {
+            System.err.println("ERROR: Operation "+record+" of the trace is on field "+Math.max(field,readfield)+", but there are only "+fieldcount+" fields");
+            return false;
+        }
+        if (tracespeed>0)
+        {
+            pace(trace.time(record));
+        }
+        int length=trace.length(record);
+        CharSequence keyname=keybuffer.get().set(trace.keynum(record));
+
+        HashSet<String> fields=null;
+        if (field>=0)
+        {
+            fields=new HashSet<String>();
+            fields.add(fieldnames[field]);
+        }
+
+        switch (trace.operation(record))
+        {
+        case READ:
+            read(db,keyname,fields);
+            break;
+        case UPDATE:
+            update(db,keyname,(field<0) ? buildValues(length) : buildUpdate(field,length));
+            break;
+        case INSERT:
+            insert(db,keyname,buildValues(length));
+            break;
+        case SCAN:
+            scan(db,keyname,(length>0) ? length : scanlength.nextInt(),fields);
+            break;
+        default:
+            HashSet<String> readfields=null;
+            if (readfield>=0)
+            {
+                readfields=new HashSet<String>();
+                readfields.add(fieldnames[readfield]);
+            }
+            readModifyWrite(db,keyname,readfields,(field<0) ? buildValues(length) : buildUpdate(field,length));
+            break;
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait until an operation recorded at the given time is due, and measure its latency from then.
+     */
+    void pace(long time)
+    {
+        long start=replaystart.get();
+        if (start==0)
+        {
+            replaystart.compareAndSet(0,System.nanoTime());
+            start=replaystart.get();
+        }
+
+        long due=start+(long)(time/tracespeed);
+        Measurements.getMeasurements().setIntendedStartTimeNs(due);
+        long now;
+        while ((now=System.nanoTime())<due)
+        {
+            LockSupport.parkNanos(due-now);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.yahoo.ycsb;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fills a field-sized buffer with random printable bytes, with RandomByteIterator.fillBytes and with the earlier
+ * scheme of six bytes per java.util.Random.nextInt(). Run it like the workload benchmarks; the fill rate is the
+ * buffer size divided by the time per op, e.g. 4096 bytes in 1000 ns is 4.1 GB/s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomFillBenchmark {
+  @Param({"100", "4096"})
+  int size;
+
+  byte[] buffer;
+  Random random = new Random();
+
+  @Setup
+  public void setUp() {
+    buffer = new byte[size];
+  }
+
+  @Benchmark
+  public byte[] fillBytes() {
+    RandomByteIterator.fillBytes(buffer, 0, buffer.length);
+    return buffer;
+  }
+
+  @Benchmark
+  public byte[] sixBytesPerInt() {
+    for (int base = 0; base < buffer.length; base += 6) {
+      int bytes = random.nextInt();
+      for (int i = 0; i < 6 && base + i < buffer.length; i++, bytes >>= 5) {
+        buffer[base + i] = (byte) ((bytes & 31) + ' ');
+      }
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,101 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestAsyncDB {
+  /**
+   * An AsyncDB whose operations only complete when the test says so.
+   */
+  static class PendingDB extends AsyncDB {
+    final ConcurrentLinkedQueue<CompletableFuture<Integer>> pending = new ConcurrentLinkedQueue<CompletableFuture<Integer>>();
+
+    CompletionStage<Integer> issue() {
+      CompletableFuture<Integer> f = new CompletableFuture<Integer>();
+      pending.add(f);
+      return f;
+    }
+
+    public CompletionStage<Integer> readAsync(String table, String key, Set<String> fields, HashMap<String, ByteIterator> result) {
+      return issue();
+    }
+
+    public CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+      return issue();
+    }
+
+    public CompletionStage<Integer> updateAsync(String table, String key, HashMap<String, ByteIterator> values) {
+      return issue();
+    }
+
+    public CompletionStage<Integer> insertAsync(String table, String key, HashMap<String, ByteIterator> values) {
+      return issue();
+    }
+
+    public CompletionStage<Integer> deleteAsync(String table, String key) {
+      return issue();
+    }
+  }
+
+  static DBWrapper wrap(PendingDB db, int maxinflight) {
+    Properties props = new Properties();
+    props.setProperty(AsyncDB.MAX_IN_FLIGHT_PROPERTY, Integer.toString(maxinflight));
+    db.setProperties(props);
+    Measurements.setProperties(props);
+    return new DBWrapper(db);
+  }
+
+  @Test
+  public void testWindowBoundsOperationsInFlight() throws Exception {
+    final PendingDB db = new PendingDB();
+    final DBWrapper wrapper = wrap(db, 2);
+
+    wrapper.readAsync("t", "a", null, new HashMap<String, ByteIterator>());
+    wrapper.updateAsync("t", "b", new HashMap<String, ByteIterator>());
+    assertEquals(2, db.pending.size());
+
+    final AtomicBoolean issued = new AtomicBoolean(false);
+    Thread third = new Thread() {
+      public void run() {
+        wrapper.deleteAsync("t", "c");
+        issued.set(true);
+      }
+    };
+    third.start();
+    third.join(200);
+    assertFalse(issued.get());
+
+    db.pending.poll().complete(0);
+    third.join(5000);
+    assertTrue(issued.get());
+
+    while (!db.pending.isEmpty()) {
+      db.pending.poll().complete(0);
+    }
+    wrapper.cleanup();
+  }
+
+  @Test
+  public void testFailedOperationsReportError() {
+    PendingDB db = new PendingDB();
+    DBWrapper wrapper = wrap(db, 4);
+
+    CompletableFuture<Integer> ok = wrapper.insertAsync("t", "a", new HashMap<String, ByteIterator>()).toCompletableFuture();
+    CompletableFuture<Integer> failed = wrapper.insertAsync("t", "b", new HashMap<String, ByteIterator>()).toCompletableFuture();
+    db.pending.poll().complete(0);
+    db.pending.poll().completeExceptionally(new RuntimeException("connection reset"));
+
+    assertEquals(Integer.valueOf(0), ok.join());
+    assertEquals(Integer.valueOf(-1), failed.join());
+  }
+}
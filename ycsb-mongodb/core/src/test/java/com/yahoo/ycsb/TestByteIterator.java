@@ -19,4 +19,38 @@ public class TestByteIterator {
     assertFalse(itor.hasNext());
     assertEquals(0, itor.bytesLeft());
   }
+
+  @Test
+  public void testRandomBufferByteIterator() {
+    RandomBufferByteIterator itor = new RandomBufferByteIterator().reset(100);
+    assertEquals(100, itor.bytesLeft());
+    byte[] first = itor.toArray();
+    assertEquals(100, first.length);
+    assertFalse(itor.hasNext());
+    for (byte b : first) {
+      assertTrue(b >= ' ' && b < ' ' + 32);
+    }
+
+    // the same length refills the same array, another length gets a new one
+    assertSame(first, itor.reset(100).toArray());
+    assertEquals(7, itor.reset(7).toArray().length);
+
+    itor.reset(10);
+    itor.nextByte();
+    assertEquals(9, itor.toArray().length);
+    assertEquals("", itor.reset(0).toString());
+  }
+
+  @Test
+  public void testFillBytesStaysInRange() {
+    for (int len = 0; len < 20; len++) {
+      byte[] buf = new byte[len + 2];
+      RandomByteIterator.fillBytes(buf, 1, len + 1);
+      assertEquals(0, buf[0]);
+      assertEquals(0, buf[len + 1]);
+      for (int i = 1; i <= len; i++) {
+        assertTrue(buf[i] >= ' ' && buf[i] < ' ' + 32);
+      }
+    }
+  }
 }
@@ -0,0 +1,150 @@
+package com.yahoo.ycsb;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.MapExporter;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MeasurementsDump;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestCoordinator {
+  @Test
+  public void testLoadRangesAreDisjoint() {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "1000");
+    props.setProperty(Workload.INSERT_START_PROPERTY, "100");
+    props.setProperty(Client.INSERT_COUNT_PROPERTY, "900");
+    props.setProperty("target", "10");
+
+    long next = 100;
+    long target = 0;
+    for (int i = 0; i < 7; i++) {
+      Properties assigned = Coordinator.assignment(props, false, i, 7);
+      assertEquals(next, Long.parseLong(assigned.getProperty(Workload.INSERT_START_PROPERTY)));
+      next += Long.parseLong(assigned.getProperty(Client.INSERT_COUNT_PROPERTY));
+      target += Long.parseLong(assigned.getProperty("target"));
+      assertNull(assigned.getProperty(Client.RANDOM_SEED_PROPERTY));
+    }
+    assertEquals(1000, next);
+    assertEquals(10, target);
+  }
+
+  @Test
+  public void testOperationsAndSeedsAreSplit() {
+    Properties props = new Properties();
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "10");
+    props.setProperty(Client.RANDOM_SEED_PROPERTY, "42");
+
+    long operations = 0;
+    for (int i = 0; i < 3; i++) {
+      Properties assigned = Coordinator.assignment(props, true, i, 3);
+      operations += Long.parseLong(assigned.getProperty(Client.OPERATION_COUNT_PROPERTY));
+      assertEquals(Long.toString(42 + i), assigned.getProperty(Client.RANDOM_SEED_PROPERTY));
+      assertNull(assigned.getProperty("target"));
+    }
+    assertEquals(10, operations);
+
+    // too low a target still leaves every worker throttled
+    props.setProperty("target", "2");
+    assertEquals("1", Coordinator.assignment(props, true, 2, 3).getProperty("target"));
+  }
+
+  @Test
+  public void testRejectsMoreWorkersThanOperations() {
+    Properties props = new Properties();
+    props.setProperty(Coordinator.WORKERS_PROPERTY, "3");
+    props.setProperty(Coordinator.LAUNCH_PROPERTY, "false");
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "2");
+    assertEquals(1, Coordinator.coordinate(props, new String[0], true));
+
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "2");
+    assertEquals(1, Coordinator.coordinate(props, new String[0], false));
+  }
+
+  @Test
+  public void testWorkersStartTogetherAndResultsMerge() throws Exception {
+    final int workers = 3;
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    final Exception[] failure = new Exception[1];
+
+    Properties props = new Properties();
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "300");
+    props.setProperty(Measurements.MEASUREMENT_TYPE, "hdrhistogram");
+
+    List<Socket> sockets = new ArrayList<Socket>();
+    List<Thread> threads = new ArrayList<Thread>();
+    MeasurementsDump results;
+    try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+      final String address = InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getLocalPort();
+      for (int t = 0; t < workers; t++) {
+        final int id = t;
+        threads.add(new Thread() {
+          public void run() {
+            try {
+              Properties own = new Properties();
+              own.setProperty(Coordinator.ADDRESS_PROPERTY, address);
+              own.setProperty(Measurements.MEASUREMENT_TYPE, "hdrhistogram");
+              Coordinator.Worker worker = Coordinator.join(own);
+              int operations = Integer.parseInt(own.getProperty(Client.OPERATION_COUNT_PROPERTY));
+
+              // the last worker is slow to set up, and nobody may start before it is ready
+              if (id == workers - 1) {
+                Thread.sleep(200);
+              }
+              events.add("ready");
+              worker.awaitStart();
+              events.add("start");
+
+              Measurements m = new Measurements(own);
+              for (int i = 0; i < operations; i++) {
+                m.measure("READ", 100 * id + i + 1);
+              }
+              worker.finish(m, operations, 1000 + id, 500);
+            } catch (Exception e) {
+              failure[0] = e;
+            }
+          }
+        });
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      results = Coordinator.run(server, new ArrayList<Process>(), sockets, props, true, workers);
+    } finally {
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+
+    assertEquals(2 * workers, events.size());
+    for (int i = 0; i < workers; i++) {
+      assertEquals("ready", events.get(i));
+      assertEquals("start", events.get(workers + i));
+    }
+
+    assertEquals(300, results.getOperations());
+    assertEquals(1000, results.getStart());
+    assertEquals(502, results.getRunTime());
+    MapExporter exporter = new MapExporter();
+    results.getMeasurements().exportMeasurements(exporter);
+    Map<String, Double> values = exporter.values;
+    assertEquals(300.0, values.get("READ Operations"));
+    assertEquals(150.0, values.get("READ 50thPercentileLatency(us)"), 0);
+    assertEquals(297.0, values.get("READ 99thPercentileLatency(us)"), 0);
+    assertEquals(300.0, values.get("READ MaxLatency(us)"), 0);
+  }
+}
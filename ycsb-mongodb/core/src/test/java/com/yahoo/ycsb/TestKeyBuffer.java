@@ -0,0 +1,34 @@
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestKeyBuffer {
+  @Test
+  public void testMatchesStringConcatenation() {
+    KeyBuffer key = new KeyBuffer("user");
+    long[] numbers = {0, 1, 9, 10, 99, 100, 12345, -1, -10, Integer.MAX_VALUE, 999999999999999999L,
+        1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE, Utils.hash(42)};
+    for (long n : numbers) {
+      String expected = "user" + n;
+      assertSame(key, key.set(n));
+      assertEquals(expected, key.toString());
+      assertEquals(expected.length(), key.length());
+      assertEquals(expected.charAt(expected.length() - 1), key.charAt(key.length() - 1));
+      assertEquals(expected.substring(2, 5), key.subSequence(2, 5).toString());
+    }
+  }
+
+  @Test
+  public void testGetBytes() {
+    KeyBuffer key = new KeyBuffer("user").set(6284781860667377211L);
+    byte[] bytes = new byte[key.length() + 2];
+    assertEquals(key.length(), key.getBytes(bytes, 2));
+    assertEquals("user6284781860667377211", new String(bytes, 2, key.length(), java.nio.charset.StandardCharsets.US_ASCII));
+  }
+
+  @Test(expectedExceptions = IndexOutOfBoundsException.class)
+  public void testCharAtPastTheKey() {
+    new KeyBuffer("user").set(7).charAt(5);
+  }
+}
@@ -0,0 +1,64 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.MapExporter;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.Measurements.Phase;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMeasurementWindow {
+  @Test
+  public void testPhasesAreMeasuredApart() throws Exception {
+    Measurements m = new Measurements(new Properties());
+    Measurements.Handle read = m.getHandle("READ");
+
+    m.setPhase(Phase.WARMUP);
+    read.measure(100);
+    read.reportReturnCode(0);
+    m.measure("UPDATE", 100);
+    m.setPhase(Phase.STEADY);
+    read.measure(200);
+    read.measure(200);
+    m.setPhase(Phase.COOLDOWN);
+    read.measure(300);
+
+    MapExporter exporter = new MapExporter();
+    m.exportMeasurements(exporter);
+    assertEquals(1.0, exporter.values.get("Warmup-READ Operations"));
+    assertEquals(1.0, exporter.values.get("Warmup-READ Return=0"));
+    assertEquals(1.0, exporter.values.get("Warmup-UPDATE Operations"));
+    assertEquals(2.0, exporter.values.get("READ Operations"));
+    assertEquals(200.0, exporter.values.get("READ AverageLatency(us)"));
+    assertEquals(1.0, exporter.values.get("Cooldown-READ Operations"));
+    assertNull(exporter.values.get("UPDATE Operations"));
+  }
+
+  @Test
+  public void testNothingSetMeasuresTheWholeRun() {
+    assertNull(MeasurementWindow.create(new Properties(), 1000, 0, new Vector<Thread>(), new Vector<ClientThread>(),
+        new Measurements(new Properties())));
+  }
+
+  @Test
+  public void testWarmupEndsAfterItsTime() throws Exception {
+    Measurements m = new Measurements(new Properties());
+    Properties props = new Properties();
+    props.setProperty(MeasurementWindow.WARMUP_TIME_PROPERTY, "0.05");
+    MeasurementWindow window = MeasurementWindow.create(props, 0, 0, new Vector<Thread>(), new Vector<ClientThread>(), m);
+
+    long st = System.currentTimeMillis();
+    window.begin(st);
+    assertEquals(Phase.WARMUP, m.getPhase());
+    window.join(10000);
+    assertEquals(Phase.STEADY, m.getPhase());
+    window.finish(st + 1000, 0);
+
+    assertTrue(window.reached(Phase.WARMUP));
+    assertTrue(window.getRunTime(Phase.WARMUP) >= 50);
+    assertEquals(st + 1000, window.getStart(Phase.STEADY) + window.getRunTime(Phase.STEADY));
+    assertFalse(window.reached(Phase.COOLDOWN));
+  }
+}
@@ -0,0 +1,28 @@
+package com.yahoo.ycsb;
+
+import java.util.SplittableRandom;
+
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestUtils {
+  static long[] choices(long seed) {
+    Utils.setRandom(new SplittableRandom(seed));
+    ZipfianGenerator zipfian = new ZipfianGenerator(1000);
+    long[] ret = new long[100];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = zipfian.nextInt();
+      // generating values must not shift the choices
+      RandomByteIterator.fillBytes(new byte[i], 0, i);
+    }
+    return ret;
+  }
+
+  @Test
+  public void testSameSeedSameChoices() {
+    long[] first = choices(42);
+    assertTrue(java.util.Arrays.equals(first, choices(42)));
+    assertFalse(java.util.Arrays.equals(first, choices(43)));
+  }
+}
@@ -0,0 +1,52 @@
+package com.yahoo.ycsb.generator;
+
+import java.util.SplittableRandom;
+
+import com.yahoo.ycsb.Utils;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestDiscreteGenerator {
+  @Test
+  public void testFrequenciesFollowWeights() {
+    Utils.setRandom(new SplittableRandom(1));
+    double[] weights = {0.5, 0.05, 0.3, 0, 0.15};
+    DiscreteGenerator gen = new DiscreteGenerator();
+    for (int i = 0; i < weights.length; i++) {
+      gen.addValue(weights[i], "v" + i);
+    }
+
+    int draws = 1000000;
+    int[] counts = new int[weights.length];
+    for (int i = 0; i < draws; i++) {
+      counts[gen.nextIndex()]++;
+    }
+    for (int i = 0; i < weights.length; i++) {
+      assertEquals("v" + i, weights[i], (double) counts[i] / draws, 0.005);
+    }
+    assertEquals(0, counts[3]);
+  }
+
+  @Test
+  public void testStringsMatchIndexes() {
+    DiscreteGenerator gen = new DiscreteGenerator();
+    gen.addValue(1, "only");
+    assertEquals(1, gen.size());
+    assertEquals("only", gen.getValue(0));
+    assertEquals("only", gen.nextString());
+    assertEquals("only", gen.lastString());
+
+    // adding a value after drawing rebuilds the table
+    gen.addValue(0, "never");
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(0, gen.nextIndex());
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testNoPositiveWeight() {
+    DiscreteGenerator gen = new DiscreteGenerator();
+    gen.addValue(0, "none");
+    gen.nextIndex();
+  }
+}
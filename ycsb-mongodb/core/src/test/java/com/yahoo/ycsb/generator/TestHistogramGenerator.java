@@ -0,0 +1,58 @@
+package com.yahoo.ycsb.generator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.SplittableRandom;
+
+import com.yahoo.ycsb.Utils;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestHistogramGenerator {
+  @Test
+  public void testDrawsFollowCounts() {
+    Utils.setRandom(new SplittableRandom(5));
+    long[] buckets = {1, 0, 3, 0, 0, 6};
+    HistogramGenerator gen = new HistogramGenerator(buckets, 100);
+    // 100*(1*1 + 3*3 + 6*6) / 10
+    assertEquals(460.0, gen.mean(), 1e-9);
+
+    int draws = 1000000;
+    int[] counts = new int[buckets.length];
+    for (int i = 0; i < draws; i++) {
+      int size = gen.nextInt();
+      assertEquals(0, size % 100);
+      assertEquals(size, gen.lastInt());
+      counts[size / 100 - 1]++;
+    }
+    for (int i = 0; i < buckets.length; i++) {
+      assertEquals(buckets[i] / 10.0, (double) counts[i] / draws, 0.005);
+    }
+  }
+
+  @Test
+  public void testCountsPastInt() {
+    HistogramGenerator gen = new HistogramGenerator(new long[] {3L << 32, 1L << 32}, 1);
+    assertEquals(1.25, gen.mean(), 1e-9);
+    for (int i = 0; i < 1000; i++) {
+      int size = gen.nextInt();
+      assertTrue(size == 1 || size == 2);
+    }
+  }
+
+  @Test
+  public void testReadsSparseFile() throws Exception {
+    File file = File.createTempFile("histogram", ".txt");
+    try (FileWriter out = new FileWriter(file)) {
+      out.write("BlockSize\t10\n3\t5\n0\t5\n");
+    }
+    HistogramGenerator gen = new HistogramGenerator(file.getPath());
+    file.delete();
+    assertEquals(4, gen.buckets.length);
+    assertEquals(25.0, gen.mean(), 1e-9);
+    for (int i = 0; i < 1000; i++) {
+      int size = gen.nextInt();
+      assertTrue(size == 10 || size == 40);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.yahoo.ycsb.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestSkewedLatestGenerator {
+  @Test
+  public void testGrowsWhileOthersDraw() throws Exception {
+    final CounterGenerator inserts = new CounterGenerator(1000);
+    final SkewedLatestGenerator latest = new SkewedLatestGenerator(inserts);
+    final AtomicReference<String> failure = new AtomicReference<String>();
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final boolean inserter = t == 0;
+      threads.add(new Thread() {
+        public void run() {
+          for (int i = 0; i < 100000; i++) {
+            if (inserter) {
+              inserts.nextInt();
+            }
+            int item = latest.nextInt();
+            if (item < 0 || item > inserts.lastInt()) {
+              failure.compareAndSet(null, "item " + item + " past " + inserts.lastInt());
+            }
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+
+    // zeta was grown to the last count some thread drew for, exactly as if it had been summed at once
+    ZipfianGenerator.State state = latest._zipfian.state.get();
+    assertEquals(ZipfianGenerator.zetastatic(0, state.countforzeta, ZipfianGenerator.ZIPFIAN_CONSTANT, 0), state.zetan, 1e-9);
+    assertTrue(state.countforzeta >= 100000);
+  }
+}
@@ -0,0 +1,72 @@
+package com.yahoo.ycsb.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestZetaCache {
+  static double serial(long n, double theta) {
+    double sum = 0;
+    for (long i = 0; i < n; i++) {
+      sum += 1 / Math.pow(i + 1, theta);
+    }
+    return sum;
+  }
+
+  @AfterMethod
+  public void noFile() {
+    ZetaCache.setFile(null);
+  }
+
+  @Test
+  public void testParallelSumMatchesSerial() {
+    long n = 3 * ZetaCache.PARALLEL_ITEMS;
+    assertEquals(serial(n, 0.99), ZetaCache.sum(0, n, 0.99, 0), 1e-9);
+    assertEquals(serial(10, 0.5), ZetaCache.zeta(10, 0.5), 0);
+  }
+
+  @Test
+  public void testApproximationMatchesSum() {
+    long n = 3 * ZetaCache.PARALLEL_ITEMS;
+    for (double theta : new double[] {0.5, 0.8, 0.99, 0.999, 1.0, 1.001, 1.2}) {
+      double exact = ZetaCache.sum(0, n, theta, 0);
+      assertEquals("theta " + theta, exact, ZetaCache.approximate(n, theta), 1e-12 * exact);
+    }
+    assertEquals(serial(ZetaCache.EXACT_ITEMS + 1, 0.7), ZetaCache.approximate(ZetaCache.EXACT_ITEMS + 1, 0.7), 1e-12);
+    assertEquals(ScrambledZipfianGenerator.ZETAN,
+        ZetaCache.approximate(ScrambledZipfianGenerator.ITEM_COUNT, ZipfianGenerator.ZIPFIAN_CONSTANT), 1e-9);
+  }
+
+  @Test
+  public void testKeepsAndExtendsConstants() throws Exception {
+    File dir = Files.createTempDirectory("zeta").toFile();
+    File file = new File(dir, "zeta.properties");
+    long n = 2 * ZetaCache.PARALLEL_ITEMS;
+
+    ZetaCache.setFile(file.getPath());
+    double small = ZetaCache.zeta(n, 0.8);
+    assertTrue(file.exists());
+
+    // a bigger count starts from the kept one, a fresh load reads it back
+    ZetaCache.setFile(file.getPath());
+    assertEquals(small, ZetaCache.zeta(n, 0.8), 0);
+    double large = ZetaCache.zeta(2 * n, 0.8);
+    assertEquals(serial(2 * n, 0.8), large, 1e-9);
+
+    Properties kept = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      kept.load(in);
+    }
+    assertEquals(2, kept.size());
+    assertEquals(large, Double.parseDouble(kept.getProperty(ZetaCache.key(2 * n, 0.8))), 0);
+
+    file.delete();
+    dir.delete();
+  }
+}
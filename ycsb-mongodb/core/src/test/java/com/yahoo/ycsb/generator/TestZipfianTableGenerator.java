@@ -0,0 +1,103 @@
+package com.yahoo.ycsb.generator;
+
+import java.util.SplittableRandom;
+
+import com.yahoo.ycsb.Utils;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestZipfianTableGenerator {
+  static final int DRAWS = 1000000;
+
+  @Test
+  public void testSameDrawsAsFormula() {
+    long items = 10000000;
+    for (double theta : new double[] {0.5, 0.99, 1.2}) {
+      double zetan = ZetaCache.approximate(items, theta);
+
+      Utils.setRandom(new SplittableRandom(7));
+      ZipfianGenerator formula = new ZipfianGenerator(0, items - 1, theta, zetan);
+      long[] expected = new long[DRAWS];
+      for (int i = 0; i < DRAWS; i++) {
+        expected[i] = formula.nextLong();
+      }
+
+      // with the same random numbers, interpolating only moves an item by a tiny fraction of its rank
+      Utils.setRandom(new SplittableRandom(7));
+      ZipfianTableGenerator table = new ZipfianTableGenerator(0, items - 1, theta, zetan);
+      for (int i = 0; i < DRAWS; i++) {
+        long item = table.nextLong();
+        assertTrue(item >= 0 && item < items);
+        assertEquals("theta " + theta, expected[i], item, 1 + 2e-4 * expected[i]);
+      }
+    }
+  }
+
+  /**
+   * Count the draws of items 0 to 9 one by one, and of larger items in buckets of doubling size.
+   */
+  static int[] histogram(IntegerGenerator gen) {
+    int[] counts = new int[40];
+    for (int i = 0; i < DRAWS; i++) {
+      long item = gen.nextInt();
+      counts[item < 10 ? (int) item : 7 + 64 - Long.numberOfLeadingZeros(item)]++;
+    }
+    return counts;
+  }
+
+  @Test
+  public void testIndependentDrawsFollowFormula() {
+    for (double theta : new double[] {0.5, 0.99, 1.2}) {
+      Utils.setRandom(new SplittableRandom(1));
+      int[] formula = histogram(new ZipfianGenerator(0, 99999, theta));
+      Utils.setRandom(new SplittableRandom(2));
+      int[] table = histogram(new ZipfianTableGenerator(0, 99999, theta));
+
+      // two-sample chi-square over the buckets either generator hit
+      double chisquare = 0;
+      int buckets = 0;
+      for (int i = 0; i < formula.length; i++) {
+        if (formula[i] + table[i] > 0) {
+          chisquare += (double) (formula[i] - table[i]) * (formula[i] - table[i]) / (formula[i] + table[i]);
+          buckets++;
+        }
+      }
+      // the 99.9th percentile of chi-square with 25 degrees of freedom is 52.6
+      assertTrue(buckets <= 26);
+      assertTrue("theta " + theta + ": " + chisquare, chisquare < 52.6);
+    }
+  }
+
+  @Test
+  public void testMeanMatchesDraws() {
+    for (double theta : new double[] {0.5, 0.99, 1.2}) {
+      Utils.setRandom(new SplittableRandom(4));
+      ZipfianTableGenerator gen = new ZipfianTableGenerator(10, 100009, theta);
+      double sum = 0;
+      for (int i = 0; i < DRAWS; i++) {
+        sum += gen.nextLong();
+      }
+      double drawn = sum / DRAWS;
+      assertEquals("theta " + theta, drawn, gen.mean(), 0.01 * drawn);
+    }
+  }
+
+  @Test
+  public void testScrambledSpreadsItems() {
+    int items = 1000;
+    Utils.setRandom(new SplittableRandom(3));
+    ScrambledZipfianTableGenerator gen = new ScrambledZipfianTableGenerator(items, ZipfianGenerator.ZIPFIAN_CONSTANT);
+    int[] counts = new int[items];
+    int top = 0;
+    for (int i = 0; i < DRAWS; i++) {
+      int item = gen.nextInt();
+      counts[item]++;
+      top = Math.max(top, counts[item]);
+    }
+    for (int count : counts) {
+      assertTrue(count > 0);
+    }
+    // the most popular item gets at least the share of rank 0
+    assertTrue(top > 0.99 * DRAWS / ScrambledZipfianGenerator.ZETAN);
+  }
+}
@@ -0,0 +1,37 @@
+package com.yahoo.ycsb.generator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Draws a key from the zipfian request distribution, as zipfiansampler=formula and zipfiansampler=table do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipfianBenchmark {
+  ScrambledZipfianGenerator formula = new ScrambledZipfianGenerator(1000000);
+  ScrambledZipfianTableGenerator table = new ScrambledZipfianTableGenerator(1000000, ZipfianGenerator.ZIPFIAN_CONSTANT);
+
+  @Benchmark
+  public long formula() {
+    return formula.nextLong();
+  }
+
+  @Benchmark
+  public long table() {
+    return table.nextLong();
+  }
+}
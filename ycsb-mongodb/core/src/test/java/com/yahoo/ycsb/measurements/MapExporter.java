@@ -0,0 +1,24 @@
+package com.yahoo.ycsb.measurements;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Collects exported values by "metric measurement", for tests to look up.
+ */
+public class MapExporter implements MeasurementsExporter {
+  public final Map<String, Double> values = new LinkedHashMap<String, Double>();
+
+  public void write(String metric, String measurement, int i) {
+    values.put(metric + " " + measurement, (double) i);
+  }
+
+  public void write(String metric, String measurement, double d) {
+    values.put(metric + " " + measurement, d);
+  }
+
+  public void close() {
+  }
+}
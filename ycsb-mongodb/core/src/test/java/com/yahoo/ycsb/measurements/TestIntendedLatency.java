@@ -0,0 +1,86 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestIntendedLatency {
+  static Measurements measurements(String interval) {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_INTERVAL, interval);
+    return new Measurements(props);
+  }
+
+  /**
+   * Time an operation the way DBWrapper does, when it should have started lagus microseconds ago.
+   */
+  static void operation(Measurements m, Measurements.Handle handle, long lagus) {
+    m.setIntendedStartTimeNs(System.nanoTime() - lagus * 1000);
+    long ist = m.getIntendedStartTimeNs();
+    long st = System.nanoTime();
+    long en = System.nanoTime();
+    handle.measure((int) ((en - st) / 1000));
+    handle.measureIntended((int) ((en - ist) / 1000));
+    handle.reportReturnCode(0);
+  }
+
+  static Map<String, Double> export(Measurements m) throws IOException {
+    MapExporter exporter = new MapExporter();
+    m.exportMeasurements(exporter);
+    return exporter.values;
+  }
+
+  @Test
+  public void testIntendedLatencyIncludesLag() throws IOException {
+    Measurements m = measurements("both");
+    Measurements.Handle read = m.getHandle("READ");
+    for (int i = 0; i < 100; i++) {
+      operation(m, read, 50000);
+    }
+
+    Map<String, Double> values = export(m);
+    assertEquals(100.0, values.get("READ Operations"));
+    assertEquals(100.0, values.get("Intended-READ Operations"));
+    assertTrue(values.get("READ AverageLatency(us)") < 50000);
+    assertTrue(values.get("Intended-READ MinLatency(us)") >= 50000);
+  }
+
+  @Test
+  public void testIntervalPicksWhatIsRecorded() throws IOException {
+    Map<String, Double> op = export(record(measurements("op")));
+    assertEquals(1.0, op.get("READ Operations"));
+    assertEquals(1.0, op.get("READ Return=0"));
+    assertNull(op.get("Intended-READ Operations"));
+    assertEquals(1.0, op.get("UPDATE Operations"));
+    assertNull(op.get("Intended-UPDATE Operations"));
+
+    Map<String, Double> intended = export(record(measurements("intended")));
+    assertNull(intended.get("READ Operations"));
+    assertEquals(1.0, intended.get("Intended-READ Operations"));
+    assertEquals(1.0, intended.get("Intended-READ Return=0"));
+    assertNull(intended.get("UPDATE Operations"));
+    assertEquals(20.0, intended.get("Intended-UPDATE AverageLatency(us)"));
+  }
+
+  static Measurements record(Measurements m) {
+    operation(m, m.getHandle("READ"), 1000);
+    m.measure("UPDATE", 10);
+    m.measureIntended("UPDATE", 20);
+    return m;
+  }
+
+  @Test
+  public void testNoScheduleFallsBackToNow() {
+    Measurements m = measurements("both");
+    m.setIntendedStartTimeNs(0);
+    long before = System.nanoTime();
+    long ist = m.getIntendedStartTimeNs();
+    assertTrue(ist >= before && ist <= System.nanoTime());
+
+    m.setIntendedStartTimeNs(before - 1000000);
+    assertEquals(before - 1000000, m.getIntendedStartTimeNs());
+  }
+}
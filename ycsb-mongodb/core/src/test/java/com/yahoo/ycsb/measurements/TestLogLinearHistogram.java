@@ -0,0 +1,54 @@
+package com.yahoo.ycsb.measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestLogLinearHistogram {
+  @Test
+  public void testSmallValuesAreExact() {
+    LogLinearHistogram h = new LogLinearHistogram(Integer.MAX_VALUE, 3);
+    for (int i = 1; i <= 1000; i++) {
+      h.record(i);
+    }
+    assertEquals(1000, h.getTotalCount());
+    assertEquals(500, h.getValueAtPercentile(50));
+    assertEquals(990, h.getValueAtPercentile(99));
+    assertEquals(1000, h.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testLargeValuesKeepSignificantDigits() {
+    LogLinearHistogram h = new LogLinearHistogram(Integer.MAX_VALUE, 3);
+    long[] values = {12345, 1234567, 123456789, Integer.MAX_VALUE};
+    for (long v : values) {
+      h.reset();
+      h.record(v);
+      long reported = h.getValueAtPercentile(100);
+      assertTrue(v + " reported as " + reported, reported >= v);
+      assertTrue(v + " reported as " + reported, (reported - v) <= v / 1000);
+    }
+  }
+
+  @Test
+  public void testAdd() {
+    LogLinearHistogram a = new LogLinearHistogram(Integer.MAX_VALUE, 2);
+    LogLinearHistogram b = new LogLinearHistogram(Integer.MAX_VALUE, 2);
+    for (int i = 0; i < 99; i++) {
+      a.record(10);
+    }
+    b.record(50000);
+    a.add(b);
+    assertEquals(100, a.getTotalCount());
+    assertEquals(10, a.getValueAtPercentile(99));
+    assertTrue(a.getValueAtPercentile(99.99) >= 50000);
+  }
+
+  @Test
+  public void testPercentileNames() {
+    assertEquals("99th", OneMeasurementHdrHistogram.getPercentileName(99));
+    assertEquals("50th", OneMeasurementHdrHistogram.getPercentileName(50));
+    assertEquals("91st", OneMeasurementHdrHistogram.getPercentileName(91));
+    assertEquals("99.9", OneMeasurementHdrHistogram.getPercentileName(99.9));
+    assertEquals("99.99", OneMeasurementHdrHistogram.getPercentileName(99.99));
+  }
+}
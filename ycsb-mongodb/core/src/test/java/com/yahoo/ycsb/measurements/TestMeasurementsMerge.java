@@ -0,0 +1,168 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMeasurementsMerge {
+  static Measurements measurements(String type, boolean threadlocal) {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE, type);
+    props.setProperty(Measurements.MEASUREMENT_THREADLOCAL, Boolean.toString(threadlocal));
+    return new Measurements(props);
+  }
+
+  static Map<String, Double> export(Measurements m) throws IOException {
+    MapExporter exporter = new MapExporter();
+    m.exportMeasurements(exporter);
+    return exporter.values;
+  }
+
+  static byte[] write(Measurements m) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    m.write(new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  void checkMergeMatchesSingle(String type, boolean threadlocal) throws IOException {
+    Measurements single = measurements(type, false);
+    Measurements merged = measurements(type, threadlocal);
+    Measurements[] workers = {measurements(type, false), measurements(type, true)};
+    for (int i = 0; i < 20000; i++) {
+      // the workers see different latencies, so only merging the histograms gives the right percentiles
+      int latency = (i % 2 == 0) ? i % 997 : 5000 + i % 3001;
+      single.measure("READ", latency);
+      single.reportReturnCode("READ", i % 3 == 0 ? -1 : 0);
+      workers[i % 2].measure("READ", latency);
+      workers[i % 2].reportReturnCode("READ", i % 3 == 0 ? -1 : 0);
+    }
+    workers[1].measure("UPDATE", 7);
+    single.measure("UPDATE", 7);
+    single.reportReturnCode("UPDATE", 0);
+    workers[1].reportReturnCode("UPDATE", 0);
+
+    for (Measurements worker : workers) {
+      merged.merge(new DataInputStream(new ByteArrayInputStream(write(worker))));
+    }
+    assertEquals(export(single), export(merged));
+  }
+
+  @Test
+  public void testHistogramMergeMatchesSingle() throws IOException {
+    checkMergeMatchesSingle("histogram", false);
+  }
+
+  @Test
+  public void testHdrHistogramMergeMatchesSingle() throws IOException {
+    checkMergeMatchesSingle("hdrhistogram", false);
+  }
+
+  @Test
+  public void testMergeIntoThreadLocalMatchesSingle() throws IOException {
+    checkMergeMatchesSingle("hdrhistogram", true);
+  }
+
+  @Test
+  public void testTimeSeriesMergeAddsUpIntervals() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(OneMeasurementTimeSeries.GRANULARITY, "1000");
+    OneMeasurementTimeSeries a = new OneMeasurementTimeSeries("READ", props);
+    OneMeasurementTimeSeries b = new OneMeasurementTimeSeries("READ", props);
+    long interval = a.start - a.start % 1000;
+    a.record(interval + 10, 4);
+    a.record(interval + 999, 6);
+    b.start = a.start - 5000;
+    b.record(interval - 3000, 7);
+    b.record(interval + 500, 50);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    b.write(new DataOutputStream(bytes));
+    OneMeasurementTimeSeries read = new OneMeasurementTimeSeries("READ", props);
+    read.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    a.merge(read);
+
+    assertEquals(b.start, a.start);
+    assertEquals(2, a._measurements.size());
+    assertEquals(3, a.unit(interval).count);
+    assertEquals(60, a.unit(interval).sum);
+    assertEquals(50, a.unit(interval).max);
+    assertEquals(7, a.unit(interval - 3000).sum);
+
+    MapExporter exporter = new MapExporter();
+    a.exportMeasurements(exporter);
+    String end = (interval + 1000 - a.start) / 1000.0 + " ms";
+    assertEquals(20.0, exporter.values.get("READ " + end), 0);
+    assertEquals(3000.0, exporter.values.get("READ " + end + " Throughput(ops/sec)"), 0);
+    assertEquals(6.0, exporter.values.get("READ " + end + " 50thPercentileLatency(us)"), 0);
+    assertEquals(50.0, exporter.values.get("READ " + end + " 99thPercentileLatency(us)"), 0);
+    assertEquals(50.0, exporter.values.get("READ " + end + " MaxLatency(us)"), 0);
+    String earlier = (interval - 2000 - a.start) / 1000.0 + " ms";
+    assertEquals(7.0, exporter.values.get("READ " + earlier + " 95thPercentileLatency(us)"), 0);
+    assertEquals(6.0, exporter.values.get("READ 50thPercentileLatency(us)"), 0);
+    assertEquals(4.0, exporter.values.get("READ Operations"), 0);
+  }
+
+  @Test
+  public void testTimeSeriesKeepsLongSums() {
+    OneMeasurementTimeSeries t = new OneMeasurementTimeSeries("READ", new Properties());
+    for (int i = 0; i < 3; i++) {
+      t.record(t.start, Integer.MAX_VALUE);
+    }
+    assertEquals(3L * Integer.MAX_VALUE, t.current.sum);
+    assertFalse(t.isEmpty());
+  }
+
+  @Test
+  public void testDumpsAddUp() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE, "hdrhistogram");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (int i = 0; i < 2; i++) {
+      Measurements m = new Measurements(props);
+      for (int j = 1; j <= 100; j++) {
+        m.measure("READ", 100 * i + j);
+      }
+      MeasurementsDump.write(out, m, 1000 + 500 * i, 2000, 100);
+    }
+
+    Properties overrides = new Properties();
+    overrides.setProperty(OneMeasurementHdrHistogram.PERCENTILES, "50,75");
+    MeasurementsDump merged = new MeasurementsDump(overrides);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    merged.merge(in);
+    merged.merge(in);
+
+    assertEquals(200, merged.getOperations());
+    assertEquals(1000, merged.getStart());
+    assertEquals(2500, merged.getRunTime());
+    Map<String, Double> values = export(merged.getMeasurements());
+    assertEquals(200.0, values.get("READ Operations"), 0);
+    assertEquals(100.0, values.get("READ 50thPercentileLatency(us)"), 0);
+    assertEquals(150.0, values.get("READ 75thPercentileLatency(us)"), 0);
+    assertNull(values.get("READ 99thPercentileLatency(us)"));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testRejectsOtherVersion() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(MeasurementsDump.MAGIC);
+    out.writeInt(MeasurementsDump.FORMAT_VERSION + 1);
+    new MeasurementsDump(new Properties()).merge(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testRejectsOtherType() throws IOException {
+    Measurements hdr = measurements("hdrhistogram", false);
+    hdr.measure("READ", 1);
+    measurements("histogram", false).merge(new DataInputStream(new ByteArrayInputStream(write(hdr))));
+  }
+}
@@ -0,0 +1,82 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMetricsServer {
+  static Measurements measurements(String type) {
+    Properties props = new Properties();
+    props.setProperty("measurementtype", type);
+    return new Measurements(props);
+  }
+
+  @Test
+  public void testPercentilesCoverTheLastScrape() {
+    for (String type : new String[] {"histogram", "hdrhistogram", "timeseries"}) {
+      Measurements m = measurements(type);
+      AtomicLong operations = new AtomicLong();
+      MetricsServer metrics = new MetricsServer(m, operations::get, new double[] {50, 99.9});
+      for (int i = 0; i < 100; i++) {
+        m.measure("READ", 10);
+        m.reportReturnCode("READ", i < 3 ? -1 : 0);
+      }
+      operations.set(100);
+      m.startOperation();
+
+      String first = metrics.scrape();
+      assertTrue(type, first.contains("ycsb_operations_total 100\n"));
+      assertTrue(type, first.contains("ycsb_operations_in_flight 1\n"));
+      assertTrue(type, first.contains("ycsb_latency_microseconds_count{operation=\"READ\"} 100\n"));
+      assertTrue(type, first.contains("ycsb_return_codes_total{operation=\"READ\",code=\"-1\"} 3\n"));
+      assertTrue(type, first.contains("ycsb_errors_total{operation=\"READ\"} 3\n"));
+      if (!type.equals("timeseries")) {
+        // time series only report the intervals that have ended
+        assertTrue(type, first.contains("ycsb_latency_microseconds{operation=\"READ\",quantile=\"0.5\"} 10\n"));
+      }
+
+      for (int i = 0; i < 10; i++) {
+        m.measure("READ", 500);
+      }
+      m.endOperation();
+      String second = metrics.scrape();
+      assertTrue(type, second.contains("ycsb_operations_in_flight 0\n"));
+      if (!type.equals("timeseries")) {
+        assertTrue(type + second, second.contains("ycsb_latency_microseconds{operation=\"READ\",quantile=\"0.5\"} 500\n"));
+        assertTrue(type, second.contains("ycsb_latency_microseconds{operation=\"READ\",quantile=\"0.999\"} 500\n"));
+      }
+      assertTrue(type, second.contains("ycsb_latency_microseconds_count{operation=\"READ\"} 110\n"));
+      assertTrue(type, metrics.scrape().contains("ycsb_latency_microseconds{operation=\"READ\",quantile=\"0.5\"} NaN\n"));
+    }
+  }
+
+  @Test
+  public void testServesOverHttp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MetricsServer.PORT_PROPERTY, "0");
+    Measurements m = measurements("hdrhistogram");
+    m.measure("UPDATE", 42);
+    MetricsServer metrics = MetricsServer.start(props, m, () -> 7);
+    try {
+      HttpURLConnection connection =
+          (HttpURLConnection) new URL("http://localhost:" + metrics.getPort() + "/metrics").openConnection();
+      assertEquals(200, connection.getResponseCode());
+      assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+      String body;
+      try (InputStream in = connection.getInputStream()) {
+        body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+      assertTrue(body.contains("ycsb_operations_total 7\n"));
+      assertTrue(body.contains("ycsb_latency_microseconds{operation=\"UPDATE\",quantile=\"0.99\"} 42\n"));
+    } finally {
+      metrics.stop();
+    }
+    assertNull(MetricsServer.start(new Properties(), m, () -> 0));
+  }
+}
@@ -0,0 +1,71 @@
+package com.yahoo.ycsb.measurements;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestOneMeasurementThreadLocal {
+  static final int THREADS = 4;
+  static final int PER_THREAD = 10000;
+
+  static int latency(int thread, int i) {
+    return (thread * 7919 + i * 31) % 5000;
+  }
+
+  /**
+   * Record the same latencies into the sharded measurement from several threads and into a plain one from this
+   * thread.
+   */
+  static void record(final OneMeasurement sharded, OneMeasurement single, final int round) throws InterruptedException {
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t + round * THREADS;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < PER_THREAD; i++) {
+          sharded.measure(latency(thread, i));
+          sharded.reportReturnCode(i % 5 == 0 ? -1 : 0);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    for (int t = 0; t < THREADS; t++) {
+      for (int i = 0; i < PER_THREAD; i++) {
+        single.measure(latency(t + round * THREADS, i));
+        single.reportReturnCode(i % 5 == 0 ? -1 : 0);
+      }
+    }
+  }
+
+  static MapExporter export(OneMeasurement m) throws Exception {
+    MapExporter exporter = new MapExporter();
+    m.exportMeasurements(exporter);
+    return exporter;
+  }
+
+  @Test
+  public void testShardsAddUpToSingleMeasurement() throws Exception {
+    final Properties props = new Properties();
+    OneMeasurementThreadLocal sharded =
+        new OneMeasurementThreadLocal("READ", () -> new OneMeasurementHistogram("READ", props));
+    OneMeasurementHistogram single = new OneMeasurementHistogram("READ", props);
+    assertTrue(sharded.isEmpty());
+
+    record(sharded, single, 0);
+    assertFalse(sharded.isEmpty());
+    assertEquals(export(single).values, export(sharded).values);
+    String summary = single.getSummary();
+    assertTrue(summary.startsWith("[READ AverageLatency(us)="));
+    assertEquals(summary, sharded.getSummary());
+
+    // the summary resets the window of every shard, while the totals keep growing
+    assertEquals("", sharded.getSummary());
+    record(sharded, single, 1);
+    assertEquals(single.getSummary(), sharded.getSummary());
+    assertEquals(export(single).values, export(sharded).values);
+    assertEquals(2.0 * THREADS * PER_THREAD, export(sharded).values.get("READ Operations"));
+  }
+}
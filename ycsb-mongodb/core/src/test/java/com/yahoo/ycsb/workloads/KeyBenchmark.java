@@ -0,0 +1,60 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares building keys as Strings with building them in the per-thread KeyBuffer. Run it with the gc profiler
+ * to see the allocation per key, e.g. from the core directory:
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main KeyBenchmark -prof gc
+ *
+ * buildKey should report a gc.alloc.rate.norm of about 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyBenchmark {
+  CoreWorkload workload;
+  long keynum;
+
+  @Setup
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "1000000");
+    workload = new CoreWorkload();
+    workload.init(props);
+  }
+
+  @Benchmark
+  public String concatenation() {
+    return "user" + Utils.hash(keynum++);
+  }
+
+  @Benchmark
+  public String buildKeyName() {
+    return workload.buildKeyName(keynum++);
+  }
+
+  @Benchmark
+  public CharSequence buildKey() {
+    return workload.buildKey(keynum++);
+  }
+}
@@ -0,0 +1,235 @@
+package com.yahoo.ycsb.workloads;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestTraceWorkload {
+  /**
+   * A DB that writes down what it was asked to do.
+   */
+  static class RecordingDB extends DB {
+    final List<String> ops = new ArrayList<String>();
+
+    public int read(String table, String key, Set<String> fields, HashMap<String, ByteIterator> result) {
+      ops.add("READ " + key + " " + fields);
+      return 0;
+    }
+
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+      ops.add("SCAN " + startkey + " " + recordcount);
+      return 0;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      ops.add("UPDATE " + key + " " + describe(values));
+      return 0;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      ops.add("INSERT " + key + " " + describe(values));
+      return 0;
+    }
+
+    public int delete(String table, String key) {
+      return 0;
+    }
+
+    static String describe(HashMap<String, ByteIterator> values) {
+      return values.size() == 1 ? values.keySet().iterator().next() + ":" + values.values().iterator().next().bytesLeft() : values.size() + " fields";
+    }
+  }
+
+  static Properties properties() {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "100");
+    Measurements.setProperties(p);
+    return p;
+  }
+
+  /**
+   * Run the transactions of a workload, a thread per DB, each for at most ops operations.
+   */
+  static void run(final CoreWorkload workload, final Properties p, final List<RecordingDB> dbs, final int ops) throws Exception {
+    final Exception[] failure = new Exception[1];
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < dbs.size(); t++) {
+      final int id = t;
+      threads.add(new Thread() {
+        public void run() {
+          try {
+            Object state = workload.initThread(p, id, dbs.size());
+            for (int i = 0; i < ops && workload.doTransaction(dbs.get(id), state); i++) {
+            }
+          } catch (Exception e) {
+            failure[0] = e;
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    workload.cleanup();
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+  }
+
+  static void replay(String text, List<RecordingDB> dbs) throws Exception {
+    File file = File.createTempFile("trace", ".bin");
+    try (OutputStream out = new FileOutputStream(file)) {
+      TraceFile.convert(new BufferedReader(new StringReader(text)), out);
+    }
+
+    Properties p = properties();
+    p.setProperty(TraceWorkload.TRACE_FILE_PROPERTY, file.getPath());
+    TraceWorkload workload = new TraceWorkload();
+    workload.init(p);
+    file.delete();
+    run(workload, p, dbs, Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void testReplaysConvertedTrace() throws Exception {
+    List<RecordingDB> dbs = new ArrayList<RecordingDB>();
+    dbs.add(new RecordingDB());
+    replay("# a trace\n"
+        + "user42\n"
+        + "READ user7 field2\n"
+        + "update user-3 field1 50\n"
+        + "UPDATE user9 * 20\n"
+        + "\n"
+        + "INSERT user1234567890123 * 10\n"
+        + "SCAN user5 * 25\n", dbs);
+
+    List<String> ops = dbs.get(0).ops;
+    assertEquals(6, ops.size());
+    assertEquals("READ user42 null", ops.get(0));
+    assertEquals("READ user7 [field2]", ops.get(1));
+    assertEquals("UPDATE user-3 field1:50", ops.get(2));
+    assertEquals("UPDATE user9 10 fields", ops.get(3));
+    assertEquals("INSERT user1234567890123 10 fields", ops.get(4));
+    assertEquals("SCAN user5 25", ops.get(5));
+  }
+
+  @Test
+  public void testThreadsShareTrace() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      text.append("user").append(i).append('\n');
+    }
+    List<RecordingDB> dbs = new ArrayList<RecordingDB>();
+    for (int t = 0; t < 3; t++) {
+      dbs.add(new RecordingDB());
+    }
+    replay(text.toString(), dbs);
+
+    assertEquals(4, dbs.get(0).ops.size());
+    assertEquals(3, dbs.get(1).ops.size());
+    assertEquals(3, dbs.get(2).ops.size());
+    assertEquals("READ user0 null", dbs.get(0).ops.get(0));
+    assertEquals("READ user3 null", dbs.get(0).ops.get(1));
+    assertEquals("READ user2 null", dbs.get(2).ops.get(0));
+  }
+
+  @Test
+  public void testReplaysRecording() throws Exception {
+    checkReplaysRecording(false);
+  }
+
+  @Test
+  public void testReplaysReadModifyWriteOfAllFields() throws Exception {
+    checkReplaysRecording(true);
+  }
+
+  void checkReplaysRecording(boolean readallfields) throws Exception {
+    File dir = Files.createTempDirectory("recording").toFile();
+    String prefix = new File(dir, "ops").getPath();
+
+    Properties p = properties();
+    p.setProperty(CoreWorkload.READ_ALL_FIELDS_PROPERTY, Boolean.toString(readallfields));
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0.4");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0.2");
+    p.setProperty(CoreWorkload.INSERT_PROPORTION_PROPERTY, "0.1");
+    p.setProperty(CoreWorkload.SCAN_PROPORTION_PROPERTY, "0.1");
+    p.setProperty(CoreWorkload.READMODIFYWRITE_PROPORTION_PROPERTY, "0.2");
+    p.setProperty(CoreWorkload.REQUEST_DISTRIBUTION_PROPERTY, "zipfian");
+    p.setProperty(CoreWorkload.RECORD_TRACE_PROPERTY, prefix);
+    CoreWorkload recorded = new CoreWorkload();
+    recorded.init(p);
+    List<RecordingDB> original = new ArrayList<RecordingDB>();
+    original.add(new RecordingDB());
+    original.add(new RecordingDB());
+    run(recorded, p, original, 500);
+
+    Properties q = properties();
+    q.setProperty(TraceWorkload.REPLAY_TRACE_PROPERTY, prefix);
+    TraceWorkload replayed = new TraceWorkload();
+    replayed.init(q);
+    List<RecordingDB> replay = new ArrayList<RecordingDB>();
+    replay.add(new RecordingDB());
+    replay.add(new RecordingDB());
+    run(replayed, q, replay, Integer.MAX_VALUE);
+
+    for (int t = 0; t < 2; t++) {
+      // a read-modify-write is a read and an update
+      assertTrue(original.get(t).ops.size() > 500);
+      assertEquals(original.get(t).ops, replay.get(t).ops);
+      new File(prefix + "." + t).delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testPacesBySpeed() throws Exception {
+    File file = File.createTempFile("trace", ".bin");
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.write(TraceFile.MAGIC);
+      for (int i = 0; i < 3; i++) {
+        TraceFile.write(out, CoreWorkload.Operation.READ, i, -1, TraceFile.READ_WRITTEN_FIELD, 0, i * 100000000L);
+      }
+    }
+    Properties p = properties();
+    p.setProperty(TraceWorkload.TRACE_FILE_PROPERTY, file.getPath());
+    p.setProperty(TraceWorkload.TRACE_SPEED_PROPERTY, "4");
+    TraceWorkload workload = new TraceWorkload();
+    workload.init(p);
+    file.delete();
+
+    List<RecordingDB> dbs = new ArrayList<RecordingDB>();
+    dbs.add(new RecordingDB());
+    long st = System.nanoTime();
+    run(workload, p, dbs, Integer.MAX_VALUE);
+    long ms = (System.nanoTime() - st) / 1000000;
+    // the last operation is due 200 ms after the first, at four times the speed 50 ms
+    assertEquals(3, dbs.get(0).ops.size());
+    assertTrue(ms + " ms", ms >= 50 && ms < 200);
+  }
+
+  @Test(expectedExceptions = java.io.IOException.class)
+  public void testRejectsBadLine() throws Exception {
+    TraceFile.convert(new BufferedReader(new StringReader("DELETE user1\n")), new java.io.ByteArrayOutputStream());
+  }
+}
@@ -0,0 +1,56 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds the values of an insert and hands each field to the binding as a byte[] the way MongoDbClient does, with
+ * and without pooledvalues. Run it like KeyBenchmark, with -prof gc to compare gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueBenchmark {
+  @Param({"false", "true"})
+  String pooledvalues;
+
+  CoreWorkload workload;
+
+  @Setup
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "1000000");
+    props.setProperty(CoreWorkload.POOLED_VALUES_PROPERTY, pooledvalues);
+    workload = new CoreWorkload();
+    workload.init(props);
+  }
+
+  @Benchmark
+  public void insertValues(Blackhole bh) {
+    HashMap<String, ByteIterator> values = workload.buildValues();
+    for (Map.Entry<String, ByteIterator> e : values.entrySet()) {
+      bh.consume(e.getKey());
+      bh.consume(e.getValue().toArray());
+    }
+  }
+}
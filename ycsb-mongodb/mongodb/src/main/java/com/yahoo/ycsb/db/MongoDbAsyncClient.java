@@ -0,0 +1,453 @@
+/*
+ * Asynchronous MongoDB client binding for YCSB, built on the reactive streams driver.
+ */
+
+package com.yahoo.ycsb.db;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.yahoo.ycsb.AsyncDB;
+import com.yahoo.ycsb.ByteArrayByteIterator;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.ReadConsistency;
+import com.yahoo.ycsb.WriteConsistency;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MongoDB client for YCSB framework that keeps several operations in flight per client thread.
+ *
+ * Operations are issued through the reactive streams driver and complete on the driver's threads, so a few client
+ * threads can keep many requests outstanding. Each client thread has at most "maxinflight" operations outstanding
+ * (see {@link AsyncDB}), and the connection pool is sized to threadcount * maxinflight so that every outstanding
+ * operation can have its own connection.
+ *
+ * Properties to set:
+ *
+ * mongodb.url=mongodb://localhost:27017 mongodb.database=ycsb mongodb.writeConcern=acknowledged
+ * mongodb.readPreference=primary mongodb.readConcern=local
+ * to pass connection to multiple mongos end points to round-robin between them, separate
+ * hostnames with "|" character
+ *
+ * Run with -p asyncops=true to have the workload issue operations without waiting for them. Unlike
+ * {@link MongoDbClient}, this binding does not support client side encryption, batched inserts or
+ * mongodb.cardinalities.
+ */
+public class MongoDbAsyncClient extends AsyncDB {
+
+    /** Used to include a field in a response. */
+    protected static final Integer INCLUDE = 1;
+
+    /** Guards setting up and tearing down the shared MongoClient instances. */
+    private static final Object INIT_LOCK = new Object();
+
+    /** The MongoClient instances shared by all the client threads, one per server. */
+    private static MongoClient[] mongo;
+
+    private static MongoDatabase[] db;
+
+    private static final AtomicInteger serverCounter = new AtomicInteger(0);
+
+    /** Count the number of times initialized to teardown on the last {@link #cleanup()}. */
+    private static final AtomicInteger initCount = new AtomicInteger(0);
+
+    /** Measure of how compressible the data is, compressibility=10 means the data can compress tenfold.
+     *  The default is 1, which is uncompressible */
+    private static float compressibility = (float) 1.0;
+
+    private static String datatype = "binData";
+
+    /**
+     * Subscribes to a publisher of at most one item, and completes with that item, or null if there was none.
+     */
+    static final class SingleSubscriber<T> extends CompletableFuture<T> implements Subscriber<T> {
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(1);
+        }
+
+        @Override
+        public void onNext(T t) {
+            complete(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void onComplete() {
+            complete(null);
+        }
+    }
+
+    /**
+     * Subscribes to a publisher, and completes with all its items.
+     */
+    static final class ListSubscriber<T> extends CompletableFuture<List<T>> implements Subscriber<T> {
+        private final List<T> items = new ArrayList<>();
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T t) {
+            items.add(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void onComplete() {
+            complete(items);
+        }
+    }
+
+    static <T> CompletableFuture<T> single(Publisher<T> publisher) {
+        SingleSubscriber<T> subscriber = new SingleSubscriber<>();
+        publisher.subscribe(subscriber);
+        return subscriber;
+    }
+
+    static <T> CompletableFuture<List<T>> list(Publisher<T> publisher) {
+        ListSubscriber<T> subscriber = new ListSubscriber<>();
+        publisher.subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Turn a failed operation into the error code 1, as {@link MongoDbClient} does.
+     */
+    private static CompletionStage<Integer> orError(CompletableFuture<Integer> operation) {
+        return operation.exceptionally(e -> {
+            System.err.println(e.toString());
+            return 1;
+        });
+    }
+
+    /**
+     * Initialize any state for this DB.
+     * Called once per DB instance; there is one DB instance per client thread.
+     */
+    @Override
+    public void init() {
+        initCount.incrementAndGet();
+        synchronized (INIT_LOCK) {
+            if (mongo != null) {
+                return;
+            }
+
+            Properties props = getProperties();
+            String urls = props.getProperty("mongodb.url", "mongodb://localhost:27017");
+            String database = props.getProperty("mongodb.database", "ycsb");
+
+            datatype = props.getProperty("datatype", "binData");
+            compressibility = Float.parseFloat(props.getProperty("compressibility", "1"));
+
+            // one connection for every operation that can be in flight
+            final int maxConnections = Integer.parseInt(props.getProperty("threadcount", "1"))
+                    * Integer.parseInt(props.getProperty(MAX_IN_FLIGHT_PROPERTY, MAX_IN_FLIGHT_PROPERTY_DEFAULT));
+
+            WriteConcern writeConcern = null;
+            String writeConcernType = props.getProperty("mongodb.writeConcern", "acknowledged").toLowerCase();
+            switch (writeConcernType) {
+                case "unacknowledged":
+                    writeConcern = WriteConcern.UNACKNOWLEDGED;
+                    break;
+                case "acknowledged":
+                    writeConcern = WriteConcern.ACKNOWLEDGED;
+                    break;
+                case "majority":
+                    writeConcern = WriteConcern.MAJORITY;
+                    break;
+                case "all":
+                    writeConcern = WriteConcern.W3;
+                    break;
+                default:
+                    System.err.println("ERROR: Invalid writeConcern: '"
+                            + writeConcernType
+                            + "'. "
+                            + "Must be [ unacknowledged | acknowledged | majority | all ]");
+                    System.exit(1);
+            }
+
+            ReadPreference readPreference = null;
+            String readPreferenceType = props.getProperty("mongodb.readPreference", "primary").toLowerCase();
+            switch (readPreferenceType) {
+                case "primary":
+                    readPreference = ReadPreference.primary();
+                    break;
+                case "secondary":
+                    readPreference = ReadPreference.secondary();
+                    break;
+                default:
+                    System.err.println("ERROR: Invalid readPreference: '"
+                            + readPreferenceType
+                            + "'. Must be [ primary | secondary ]");
+                    System.exit(1);
+            }
+
+            ReadConcern readConcern = null;
+            String readConcernLevel = props.getProperty("mongodb.readConcern", "local").toLowerCase();
+            switch (readConcernLevel) {
+                case "local":
+                    readConcern = ReadConcern.LOCAL;
+                    break;
+                case "majority":
+                    readConcern = ReadConcern.MAJORITY;
+                    break;
+                default:
+                    System.err.println("ERROR: Invalid readConcern: '"
+                            + readConcernLevel
+                            + "'. Must be [ local | majority ]");
+                    System.exit(1);
+            }
+
+            try {
+                String[] server = urls.split("\\|"); // split on the "|" character
+                mongo = new MongoClient[server.length];
+                db = new MongoDatabase[server.length];
+
+                for (int i = 0; i < server.length; i++) {
+                    MongoClientSettings settings = MongoClientSettings.builder()
+                            .applyConnectionString(new ConnectionString(server[i]))
+                            .applyToConnectionPoolSettings(builder -> builder.maxSize(maxConnections))
+                            .writeConcern(writeConcern)
+                            .readPreference(readPreference)
+                            .readConcern(readConcern)
+                            .build();
+                    mongo[i] = MongoClients.create(settings);
+                    db[i] = mongo[i].getDatabase(database);
+                    System.out.println("async mongo connection created to " + server[i].replaceAll("//[^@/]*@", "//XXXXXX@"));
+                }
+            } catch (Exception e1) {
+                System.err.println("Could not initialize MongoDB connection pool for Loader: " + e1);
+                e1.printStackTrace();
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Cleanup any state for this DB.
+     * Called once per DB instance; there is one DB instance per client thread.
+     */
+    @Override
+    public void cleanup() {
+        if (initCount.decrementAndGet() <= 0) {
+            synchronized (INIT_LOCK) {
+                if (mongo == null) {
+                    return;
+                }
+                for (MongoClient mongoClient : mongo) {
+                    try {
+                        mongoClient.close();
+                    } catch (Exception e1) { /* ignore */ }
+                }
+                mongo = null;
+                db = null;
+            }
+        }
+    }
+
+    private MongoCollection<Document> collection(String table) {
+        return db[(serverCounter.getAndIncrement() & Integer.MAX_VALUE) % db.length].getCollection(table);
+    }
+
+    /**
+     * A collection with the read preference and read concern of a read consistency, or the configured ones if it
+     * is null.
+     */
+    private MongoCollection<Document> collection(String table, ReadConsistency consistency) {
+        MongoCollection<Document> collection = collection(table);
+        if (consistency == null) {
+            return collection;
+        }
+        switch (consistency) {
+            case SECONDARY:
+                return collection.withReadPreference(ReadPreference.secondary()).withReadConcern(ReadConcern.LOCAL);
+            case MAJORITY:
+                return collection.withReadPreference(ReadPreference.primary()).withReadConcern(ReadConcern.MAJORITY);
+            default:
+                return collection.withReadPreference(ReadPreference.primary()).withReadConcern(ReadConcern.LOCAL);
+        }
+    }
+
+    /**
+     * A collection with the write concern of a write consistency, or the configured one if it is null.
+     */
+    private MongoCollection<Document> collection(String table, WriteConsistency consistency) {
+        MongoCollection<Document> collection = collection(table);
+        if (consistency == null) {
+            return collection;
+        }
+        return collection.withWriteConcern(MongoDbClient.writeConcern(consistency));
+    }
+
+    private byte[] applyCompressibility(byte[] data) {
+        long string_length = data.length;
+
+        long random_string_length = Math.round(string_length / compressibility);
+        long compressible_len = string_length - random_string_length;
+        for (int i = 0; i < compressible_len; i++)
+            data[i] = 97;
+        return data;
+    }
+
+    private Document toDocument(Document r, HashMap<String, ByteIterator> values) {
+        for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+            byte[] data = applyCompressibility(entry.getValue().toArray());
+            if (datatype.equals("string")) {
+                r.put(entry.getKey(), new String(data));
+            } else {
+                r.put(entry.getKey(), data);
+            }
+        }
+        return r;
+    }
+
+    private static Document projection(Set<String> fields) {
+        if (fields == null) {
+            return null;
+        }
+        Document fieldsToReturn = new Document();
+        for (final String field : fields) {
+            fieldsToReturn.put(field, INCLUDE);
+        }
+        return fieldsToReturn;
+    }
+
+    /**
+     * Copy the byte array and string fields of a document into a result map.
+     *
+     * @param resultMap result map
+     * @param document source document
+     */
+    protected void fillMap(HashMap<String, ByteIterator> resultMap, Document document) {
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Binary) {
+                resultMap.put(entry.getKey(), new ByteArrayByteIterator(((Binary) value).getData()));
+            } else if (value instanceof byte[]) {
+                resultMap.put(entry.getKey(), new ByteArrayByteIterator((byte[]) value));
+            } else if (value instanceof String && !entry.getKey().equals("_id")) {
+                resultMap.put(entry.getKey(), new ByteArrayByteIterator(((String) value).getBytes()));
+            }
+        }
+    }
+
+    @Override
+    public CompletionStage<Integer> readAsync(String table, String key, Set<String> fields,
+            HashMap<String, ByteIterator> result) {
+        return readAsync(table, key, fields, result, null);
+    }
+
+    @Override
+    public CompletionStage<Integer> readAsync(String table, String key, Set<String> fields,
+            HashMap<String, ByteIterator> result, ReadConsistency consistency) {
+        return orError(single(collection(table, consistency).find(new Document("_id", key)).projection(projection(fields)).first())
+                .thenApply(queryResult -> {
+                    if (queryResult == null) {
+                        System.err.println("No results returned for key " + key);
+                        return 1;
+                    }
+                    fillMap(result, queryResult);
+                    return 0;
+                }));
+    }
+
+    @Override
+    public CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields,
+            Vector<HashMap<String, ByteIterator>> result) {
+        return scanAsync(table, startkey, recordcount, fields, result, null);
+    }
+
+    @Override
+    public CompletionStage<Integer> scanAsync(String table, String startkey, int recordcount, Set<String> fields,
+            Vector<HashMap<String, ByteIterator>> result, ReadConsistency consistency) {
+        Document q = new Document("_id", new Document("$gte", startkey));
+        Document s = new Document("_id", INCLUDE);
+        return orError(list(collection(table, consistency).find(q).projection(projection(fields)).sort(s).limit(recordcount))
+                .thenApply(documents -> {
+                    if (documents.isEmpty()) {
+                        System.err.println("Nothing found in scan for key " + startkey);
+                        return 1;
+                    }
+                    for (Document obj : documents) {
+                        HashMap<String, ByteIterator> resultMap = new HashMap<>();
+                        fillMap(resultMap, obj);
+                        result.add(resultMap);
+                    }
+                    return 0;
+                }));
+    }
+
+    @Override
+    public CompletionStage<Integer> updateAsync(String table, String key, HashMap<String, ByteIterator> values) {
+        return updateAsync(table, key, values, null);
+    }
+
+    @Override
+    public CompletionStage<Integer> updateAsync(String table, String key, HashMap<String, ByteIterator> values,
+            WriteConsistency consistency) {
+        Document u = new Document("$set", toDocument(new Document(), values));
+        return orError(single(collection(table, consistency).updateOne(new Document("_id", key), u))
+                .thenApply((UpdateResult res) -> {
+                    if (res.wasAcknowledged() && res.getMatchedCount() == 0) {
+                        System.err.println("Nothing updated for key " + key);
+                        return 1;
+                    }
+                    return 0;
+                }));
+    }
+
+    @Override
+    public CompletionStage<Integer> insertAsync(String table, String key, HashMap<String, ByteIterator> values) {
+        return insertAsync(table, key, values, null);
+    }
+
+    @Override
+    public CompletionStage<Integer> insertAsync(String table, String key, HashMap<String, ByteIterator> values,
+            WriteConsistency consistency) {
+        Document r = toDocument(new Document("_id", key), values);
+        return orError(single(collection(table, consistency).insertOne(r)).thenApply(res -> 0));
+    }
+
+    @Override
+    public CompletionStage<Integer> deleteAsync(String table, String key) {
+        return deleteAsync(table, key, null);
+    }
+
+    @Override
+    public CompletionStage<Integer> deleteAsync(String table, String key, WriteConsistency consistency) {
+        return orError(single(collection(table, consistency).deleteMany(new Document("_id", key))).thenApply(res -> 0));
+    }
+}
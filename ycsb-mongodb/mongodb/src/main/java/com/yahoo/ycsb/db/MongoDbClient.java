@@ -25,6 +25,9 @@ import com.mongodb.client.vault.ClientEncryptions;
 import com.yahoo.ycsb.ByteArrayByteIterator;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.RandomBufferByteIterator;
+import com.yahoo.ycsb.ReadConsistency;
+import com.yahoo.ycsb.WriteConsistency;
 import com.yahoo.ycsb.generator.DiscreteGenerator;
 import org.bson.BsonArray;
 import org.bson.BsonBinary;
@@ -79,6 +82,9 @@ public class MongoDbClient extends DB {
     /** Used to include a field in a response. */
     protected static final Integer INCLUDE = 1;
 
+    /** Guards setting up and tearing down the shared MongoClient instances. */
+    private static final Object INIT_LOCK = new Object();
+
     /** A singleton MongoClient instance. */
     private static MongoClient[] mongo;
 
@@ -199,11 +205,12 @@ public class MongoDbClient extends DB {
 
     private static byte[] overrideDataIfDiscrete(String key, byte[] data) {
         // override the data with a value from discrete set
-        // generator.nextString() is read-only with a thread-local random number
-        // generator, so there's no need to synchronize this function.
+        // generator.nextIndex() only reads the generator's alias table and draws from
+        // a thread-local random number generator, so there's no need to synchronize
+        // this function, and it costs the same whatever the field's cardinality.
         DiscreteGenerator generator = discreteFields.get(key);
         if (generator != null) {
-            byte[] discrete = generator.nextString().getBytes();
+            byte[] discrete = generator.getValue(generator.nextIndex()).getBytes();
 
             if (discrete.length >= data.length) {
                 // do not truncate if discrete value is longer than desired length
@@ -392,7 +399,7 @@ public class MongoDbClient extends DB {
     @Override
     public void init() {
         initCount.incrementAndGet();
-        synchronized (INCLUDE) {
+        synchronized (INIT_LOCK) {
             if (mongo != null) {
                 return;
             }
@@ -598,14 +605,60 @@ public class MongoDbClient extends DB {
     @Override
     public void cleanup() {
         if (initCount.decrementAndGet() <= 0) {
-            for (MongoClient mongoClient : mongo) {
-                try {
-                    mongoClient.close();
-                } catch (Exception e1) { /* ignore */ }
+            synchronized (INIT_LOCK) {
+                for (MongoClient mongoClient : mongo) {
+                    try {
+                        mongoClient.close();
+                    } catch (Exception e1) { /* ignore */ }
+                }
             }
         }
     }
 
+    /**
+     * Apply the read preference and read concern of a read consistency to a collection, or leave the configured
+     * ones if it is null.
+     */
+    static <T> MongoCollection<T> withConsistency(MongoCollection<T> collection, ReadConsistency consistency) {
+        if (consistency == null) {
+            return collection;
+        }
+        switch (consistency) {
+            case SECONDARY:
+                return collection.withReadPreference(ReadPreference.secondary()).withReadConcern(ReadConcern.LOCAL);
+            case MAJORITY:
+                return collection.withReadPreference(ReadPreference.primary()).withReadConcern(ReadConcern.MAJORITY);
+            default:
+                return collection.withReadPreference(ReadPreference.primary()).withReadConcern(ReadConcern.LOCAL);
+        }
+    }
+
+    /**
+     * The write concern of a write consistency.
+     */
+    static WriteConcern writeConcern(WriteConsistency consistency) {
+        switch (consistency) {
+            case NONE:
+                return WriteConcern.UNACKNOWLEDGED;
+            case MAJORITY:
+                return WriteConcern.MAJORITY;
+            case ALL:
+                return WriteConcern.W3;
+            default:
+                return WriteConcern.ACKNOWLEDGED;
+        }
+    }
+
+    /**
+     * Apply the write concern of a write consistency to a collection, or leave the configured one if it is null.
+     */
+    static <T> MongoCollection<T> withConsistency(MongoCollection<T> collection, WriteConsistency consistency) {
+        if (consistency == null) {
+            return collection;
+        }
+        return collection.withWriteConcern(writeConcern(consistency));
+    }
+
     private byte[] applyCompressibility(byte[] data){
         long string_length = data.length;
 
@@ -625,8 +678,16 @@ public class MongoDbClient extends DB {
      */
     @Override
     public int delete(String table, String key) {
+        return delete(table, key, null);
+    }
+
+    /**
+     * Delete a record from the database, waiting for the given acknowledgement.
+     */
+    @Override
+    public int delete(String table, String key, WriteConsistency consistency) {
         try {
-            MongoCollection<Document> collection = db[serverCounter++%db.length].getCollection(table);
+            MongoCollection<Document> collection = withConsistency(db[serverCounter++%db.length].getCollection(table), consistency);
             Document q = new Document("_id", key);
             collection.deleteMany(q);
             return 0;
@@ -650,12 +711,26 @@ public class MongoDbClient extends DB {
     @Override
     public int insert(String table, String key,
             HashMap<String, ByteIterator> values) {
-        MongoCollection<Document> collection = db[serverCounter++%db.length].getCollection(table);
+        return insert(table, key, values, null);
+    }
+
+    /**
+     * Insert a record in the database, waiting for the given acknowledgement. With batched inserts, the batch is
+     * written with the consistency of the insert that completes it.
+     */
+    @Override
+    public int insert(String table, String key,
+            HashMap<String, ByteIterator> values, WriteConsistency consistency) {
+        MongoCollection<Document> collection = withConsistency(db[serverCounter++%db.length].getCollection(table), consistency);
         Document r = new Document("_id", key);
-        for (String k : values.keySet()) {
-            byte[] data = overrideDataIfDiscrete(k, values.get(k).toArray());
+        for (Map.Entry<String, ByteIterator> e : values.entrySet()) {
+            String k = e.getKey();
+            byte[] data = overrideDataIfDiscrete(k, e.getValue().toArray());
             if (datatype.equals("string")) {
                 r.put(k, new String(applyCompressibility(data)));
+            } else if (BATCHSIZE > 1 && e.getValue() instanceof RandomBufferByteIterator) {
+                // the buffer is refilled for the next record before the batch is written
+                r.put(k, applyCompressibility(data).clone());
             } else {
                 r.put(k,applyCompressibility(data));
             }
@@ -702,11 +777,20 @@ public class MongoDbClient extends DB {
      * @return Zero on success, a non-zero error code on error or "not found".
      */
     @Override
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public int read(String table, String key, Set<String> fields,
             HashMap<String, ByteIterator> result) {
+        return read(table, key, fields, result, null);
+    }
+
+    /**
+     * Read a record from the database with the given read preference and read concern.
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public int read(String table, String key, Set<String> fields,
+            HashMap<String, ByteIterator> result, ReadConsistency consistency) {
         try {
-            MongoCollection<Document> collection = db[serverCounter++%db.length].getCollection(table);
+            MongoCollection<Document> collection = withConsistency(db[serverCounter++%db.length].getCollection(table), consistency);
             Document q = new Document("_id", key);
             Document fieldsToReturn;
 
@@ -749,8 +833,17 @@ public class MongoDbClient extends DB {
     @Override
     public int update(String table, String key,
             HashMap<String, ByteIterator> values) {
+        return update(table, key, values, null);
+    }
+
+    /**
+     * Update a record in the database, waiting for the given acknowledgement.
+     */
+    @Override
+    public int update(String table, String key,
+            HashMap<String, ByteIterator> values, WriteConsistency consistency) {
         try {
-            MongoCollection<Document> collection = db[serverCounter++%db.length].getCollection(table);
+            MongoCollection<Document> collection = withConsistency(db[serverCounter++%db.length].getCollection(table), consistency);
             Document q = new Document("_id", key);
             Document u = new Document();
             Document fieldsToSet = new Document();
@@ -789,9 +882,18 @@ public class MongoDbClient extends DB {
     @Override
     public int scan(String table, String startkey, int recordcount,
             Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+        return scan(table, startkey, recordcount, fields, result, null);
+    }
+
+    /**
+     * Perform a range scan with the given read preference and read concern.
+     */
+    @Override
+    public int scan(String table, String startkey, int recordcount,
+            Set<String> fields, Vector<HashMap<String, ByteIterator>> result, ReadConsistency consistency) {
         MongoCursor<Document> cursor = null;
         try {
-            MongoCollection<Document> collection = db[serverCounter++%db.length].getCollection(table);
+            MongoCollection<Document> collection = withConsistency(db[serverCounter++%db.length].getCollection(table), consistency);
             Document fieldsToReturn = null;
             // { "_id":{"$gte":startKey, "$lte":{"appId":key+"\uFFFF"}} }
             Document scanRange = new Document("$gte", startkey);
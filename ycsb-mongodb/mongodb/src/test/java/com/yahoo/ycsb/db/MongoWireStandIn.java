@@ -0,0 +1,259 @@
+package com.yahoo.ycsb.db;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+/**
+ * A stand-in for a standalone mongod that speaks just enough of the wire protocol for the YCSB bindings: the
+ * OP_QUERY handshake, and OP_MSG hello, insert, find by _id (exact or $gte with sort and limit), update with $set
+ * and delete. Documents are kept in memory, ordered by their string _id.
+ */
+public class MongoWireStandIn implements AutoCloseable {
+  static final int OP_REPLY = 1;
+  static final int OP_QUERY = 2004;
+  static final int OP_MSG = 2013;
+  static final int MORE_TO_COME = 1 << 1;
+
+  final ServerSocket server;
+  final Map<String, NavigableMap<String, BsonDocument>> collections = new ConcurrentHashMap<>();
+  final AtomicInteger requestIds = new AtomicInteger();
+  final AtomicInteger commands = new AtomicInteger();
+
+  public MongoWireStandIn() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::accept, "MongoWireStandIn");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  public String getUrl() {
+    return "mongodb://127.0.0.1:" + server.getLocalPort();
+  }
+
+  public NavigableMap<String, BsonDocument> collection(String name) {
+    return collections.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>());
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+  }
+
+  void accept() {
+    while (!server.isClosed()) {
+      try {
+        Socket s = server.accept();
+        Thread t = new Thread(() -> serve(s), "MongoWireStandIn-" + s.getPort());
+        t.setDaemon(true);
+        t.start();
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  void serve(Socket s) {
+    try (Socket socket = s) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      OutputStream out = socket.getOutputStream();
+      byte[] header = new byte[16];
+      while (true) {
+        in.readFully(header);
+        ByteBuffer h = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        int length = h.getInt();
+        int requestId = h.getInt();
+        h.getInt();
+        int opCode = h.getInt();
+        byte[] body = new byte[length - 16];
+        in.readFully(body);
+        ByteBuffer b = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (opCode == OP_QUERY) {
+          b.getInt(); // flags
+          readCString(b); // full collection name
+          b.getInt(); // skip
+          b.getInt(); // return
+          BsonDocument reply = execute(readDocument(b));
+          out.write(reply(requestId, OP_REPLY, reply));
+        } else if (opCode == OP_MSG) {
+          int flags = b.getInt();
+          BsonDocument command = null;
+          while (b.hasRemaining()) {
+            byte kind = b.get();
+            if (kind == 0) {
+              command = readDocument(b);
+            } else {
+              int start = b.position();
+              int size = b.getInt();
+              String identifier = readCString(b);
+              BsonArray documents = new BsonArray();
+              while (b.position() < start + size) {
+                documents.add(readDocument(b));
+              }
+              command.put(identifier, documents);
+            }
+          }
+          BsonDocument reply = execute(command);
+          if ((flags & MORE_TO_COME) == 0) {
+            out.write(reply(requestId, OP_MSG, reply));
+          }
+        } else {
+          return;
+        }
+        out.flush();
+      }
+    } catch (EOFException e) {
+      // the driver closed the connection
+    } catch (IOException e) {
+      // the stand-in was closed
+    }
+  }
+
+  BsonDocument execute(BsonDocument command) {
+    commands.incrementAndGet();
+    String name = command.getFirstKey();
+    BsonDocument ok = new BsonDocument("ok", new BsonDouble(1.0));
+    switch (name) {
+      case "isMaster":
+      case "ismaster":
+      case "hello":
+        return ok.append("helloOk", BsonBoolean.TRUE)
+            .append("ismaster", BsonBoolean.TRUE)
+            .append("isWritablePrimary", BsonBoolean.TRUE)
+            .append("maxBsonObjectSize", new BsonInt32(16 * 1024 * 1024))
+            .append("maxMessageSizeBytes", new BsonInt32(48000000))
+            .append("maxWriteBatchSize", new BsonInt32(100000))
+            .append("localTime", new BsonDateTime(System.currentTimeMillis()))
+            .append("minWireVersion", new BsonInt32(0))
+            .append("maxWireVersion", new BsonInt32(13));
+      case "insert": {
+        NavigableMap<String, BsonDocument> c = collection(command.getString(name).getValue());
+        BsonArray documents = command.getArray("documents");
+        for (BsonValue d : documents) {
+          c.put(d.asDocument().getString("_id").getValue(), d.asDocument());
+        }
+        return ok.append("n", new BsonInt32(documents.size()));
+      }
+      case "find": {
+        NavigableMap<String, BsonDocument> c = collection(command.getString(name).getValue());
+        BsonValue id = command.getDocument("filter").get("_id");
+        int limit = command.containsKey("limit") ? Math.abs(command.getNumber("limit").intValue()) : 0;
+        BsonArray batch = new BsonArray();
+        Iterable<BsonDocument> matches;
+        if (id.isDocument()) {
+          matches = c.tailMap(id.asDocument().getString("$gte").getValue(), true).values();
+        } else {
+          BsonDocument d = c.get(id.asString().getValue());
+          matches = d == null ? java.util.Collections.<BsonDocument>emptyList() : java.util.Collections.singletonList(d);
+        }
+        for (BsonDocument d : matches) {
+          if (limit > 0 && batch.size() >= limit) {
+            break;
+          }
+          batch.add(project(d, command.getDocument("projection", null)));
+        }
+        return ok.append("cursor", new BsonDocument("firstBatch", batch)
+            .append("id", new BsonInt64(0))
+            .append("ns", new BsonString(command.getString("$db").getValue() + "." + command.getString(name).getValue())));
+      }
+      case "update": {
+        NavigableMap<String, BsonDocument> c = collection(command.getString(name).getValue());
+        int n = 0;
+        for (BsonValue u : command.getArray("updates")) {
+          BsonDocument d = c.get(u.asDocument().getDocument("q").getString("_id").getValue());
+          if (d != null) {
+            d.putAll(u.asDocument().getDocument("u").getDocument("$set"));
+            n++;
+          }
+        }
+        return ok.append("n", new BsonInt32(n)).append("nModified", new BsonInt32(n));
+      }
+      case "delete": {
+        NavigableMap<String, BsonDocument> c = collection(command.getString(name).getValue());
+        int n = 0;
+        for (BsonValue d : command.getArray("deletes")) {
+          if (c.remove(d.asDocument().getDocument("q").getString("_id").getValue()) != null) {
+            n++;
+          }
+        }
+        return ok.append("n", new BsonInt32(n));
+      }
+      default:
+        return ok;
+    }
+  }
+
+  static BsonDocument project(BsonDocument d, BsonDocument projection) {
+    if (projection == null || projection.isEmpty()) {
+      return d;
+    }
+    BsonDocument ret = new BsonDocument("_id", d.get("_id"));
+    for (String field : projection.keySet()) {
+      if (d.containsKey(field)) {
+        ret.put(field, d.get(field));
+      }
+    }
+    return ret;
+  }
+
+  byte[] reply(int responseTo, int opCode, BsonDocument document) {
+    BasicOutputBuffer doc = new BasicOutputBuffer();
+    new BsonDocumentCodec().encode(new BsonBinaryWriter(doc), document, EncoderContext.builder().build());
+    byte[] encoded = doc.toByteArray();
+
+    int prefix = opCode == OP_REPLY ? 20 : 5;
+    ByteBuffer b = ByteBuffer.allocate(16 + prefix + encoded.length).order(ByteOrder.LITTLE_ENDIAN);
+    b.putInt(b.capacity()).putInt(requestIds.incrementAndGet()).putInt(responseTo).putInt(opCode);
+    if (opCode == OP_REPLY) {
+      b.putInt(0).putLong(0).putInt(0).putInt(1);
+    } else {
+      b.putInt(0).put((byte) 0);
+    }
+    b.put(encoded);
+    return b.array();
+  }
+
+  static BsonDocument readDocument(ByteBuffer b) {
+    int size = b.getInt(b.position());
+    ByteBuffer slice = b.slice();
+    slice.limit(size);
+    b.position(b.position() + size);
+    return new BsonDocumentCodec().decode(new BsonBinaryReader(slice), DecoderContext.builder().build());
+  }
+
+  static String readCString(ByteBuffer b) {
+    int start = b.position();
+    while (b.get() != 0) {
+      // find the terminator
+    }
+    return new String(b.array(), b.arrayOffset() + start, b.position() - start - 1, java.nio.charset.StandardCharsets.UTF_8);
+  }
+}
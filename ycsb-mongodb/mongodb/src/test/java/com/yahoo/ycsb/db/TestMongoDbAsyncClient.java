@@ -0,0 +1,96 @@
+package com.yahoo.ycsb.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.ReadConsistency;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.WriteConsistency;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMongoDbAsyncClient {
+  MongoWireStandIn server;
+  MongoDbAsyncClient client;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    server = new MongoWireStandIn();
+    Properties props = new Properties();
+    props.setProperty("mongodb.url", server.getUrl());
+    props.setProperty("threadcount", "1");
+    props.setProperty("maxinflight", "4");
+    client = new MongoDbAsyncClient();
+    client.setProperties(props);
+    client.init();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    client.cleanup();
+    server.close();
+  }
+
+  static HashMap<String, ByteIterator> values(String value) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("field0", new StringByteIterator(value));
+    values.put("field1", new StringByteIterator(value));
+    return values;
+  }
+
+  @Test
+  public void testOperationsInFlight() {
+    List<CompletableFuture<Integer>> inserts = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 0; i < 20; i++) {
+      inserts.add(client.insertAsync("inflight", "user" + i, values("v" + i)).toCompletableFuture());
+    }
+    for (CompletableFuture<Integer> f : inserts) {
+      assertEquals(Integer.valueOf(0), f.join());
+    }
+    assertEquals(20, server.collection("inflight").size());
+  }
+
+  @Test
+  public void testReadUpdateScanDelete() {
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, client.insert("crud", "user" + i, values("a")));
+    }
+
+    assertEquals(0, client.update("crud", "user2", values("b")));
+    assertEquals(1, client.update("crud", "missing", values("b")));
+
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, client.read("crud", "user2", Collections.singleton("field1"), result));
+    assertEquals(1, result.size());
+    assertEquals("b", result.get("field1").toString());
+    assertEquals(1, client.read("crud", "missing", null, new HashMap<String, ByteIterator>()));
+
+    Vector<HashMap<String, ByteIterator>> scanned = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(0, client.scan("crud", "user1", 3, null, scanned));
+    assertEquals(3, scanned.size());
+    assertEquals("b", scanned.get(1).get("field0").toString());
+
+    assertEquals(0, client.delete("crud", "user0"));
+    assertEquals(4, server.collection("crud").size());
+  }
+
+  @Test
+  public void testPerOperationConsistency() {
+    for (WriteConsistency w : WriteConsistency.values()) {
+      assertEquals(0, client.insert("consistency", "user" + w.ordinal(), values(w.getName()), w));
+    }
+    for (ReadConsistency r : ReadConsistency.values()) {
+      HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      assertEquals(0, client.read("consistency", "user" + WriteConsistency.MAJORITY.ordinal(), null, result, r));
+      assertEquals("majority", result.get("field0").toString());
+    }
+  }
+}